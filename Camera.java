@@ -32,6 +32,13 @@ public class Camera {
   private float pitch;
   
   private Mat4 perspective;
+  private Mat4 view = new Mat4(1);
+  private float[] sinCos = new float[2];
+
+  private Mat4 viewProjection = new Mat4(1);
+  private Frustum frustum = new Frustum();   // no planes set, so nothing is culled until updateFrustum()
+  private boolean culling = true;
+  private RenderStats stats = new RenderStats();
 
   public Camera(Vec3 position, Vec3 target, Vec3 up) {
     setupCamera(position, target, up);
@@ -52,6 +59,15 @@ public class Camera {
   public Vec3 getPosition() {
     return new Vec3(position);
   }
+
+  /**
+   * Copies the position into dest, for code run every frame that should not allocate.
+   */
+  public void getPosition(Vec3 dest) {
+    dest.x = position.x;
+    dest.y = position.y;
+    dest.z = position.z;
+  }
   
   public void setPosition(Vec3 p) {
     setupCamera(p, target, up);
@@ -74,8 +90,11 @@ public class Camera {
   }
 
   public Mat4 getViewMatrix() {
-    target = Vec3.add(position, front);
-    return Mat4Transform.lookAt(position, target, up);
+    target.x = position.x+front.x;
+    target.y = position.y+front.y;
+    target.z = position.z+front.z;
+    Mat4Transform.lookAt(position, target, up, view);
+    return view;
   }
   
   public void setPerspectiveMatrix(Mat4 m) {
@@ -85,6 +104,38 @@ public class Camera {
   public Mat4 getPerspectiveMatrix() {
     return perspective;
   }
+
+  /**
+   * Extracts the frustum planes from the current perspective and view matrices.
+   * Call once per frame, after the camera has moved and before anything is drawn.
+   */
+  public void updateFrustum() {
+    Mat4.multiplyInto(perspective, getViewMatrix(), viewProjection);
+    frustum.set(viewProjection);
+  }
+
+  public Frustum getFrustum() {
+    return frustum;
+  }
+
+  /**
+   * Returns false if the world-space box b cannot be seen, or true if it may be (or culling is off).
+   */
+  public boolean isVisible(AABB b) {
+    return !culling || frustum.intersects(b);
+  }
+
+  public void setCulling(boolean b) {
+    culling = b;
+  }
+
+  public boolean isCulling() {
+    return culling;
+  }
+
+  public RenderStats getRenderStats() {
+    return stats;
+  }
  
   public void keyboardInput(Movement movement) {
     switch (movement) {
@@ -108,14 +159,13 @@ public class Camera {
   }
   
   private void updateFront() {
-    double cy, cp, sy, sp;
-    cy = Math.cos(yaw);
-    sy = Math.sin(yaw);
-    cp = Math.cos(pitch);
-    sp = Math.sin(pitch);
-    front.x = (float)(cy*cp);
-    front.y = (float)(sp);
-    front.z = (float)(sy*cp);
+    Trig.sinCos(yaw, sinCos);
+    float sy = sinCos[0], cy = sinCos[1];
+    Trig.sinCos(pitch, sinCos);
+    float sp = sinCos[0], cp = sinCos[1];
+    front.x = cy*cp;
+    front.y = sp;
+    front.z = sy*cp;
     front.normalize();
     target = Vec3.add(position,front);
   }
@@ -0,0 +1,246 @@
+import gmaths.*;
+import java.util.ArrayList;
+import com.jogamp.opengl.*;
+
+/**
+ * A flattened, array-based copy of a scene graph subtree, for updating and drawing it without
+ * recursion, virtual calls or allocation.
+ *
+ * Each TransformNode gets a slot, numbered in depth-first order, with its parent's slot in parent[] and
+ * its local and world matrices packed 16 floats each (row-major) in local[] and world[]. Slot 0 holds
+ * the transform the subtree is placed with. world[s] = world[parent[s]]*local[s], which is the matrix
+ * TransformNode.update passes to its children, so a single forward loop over the slots updates the whole
+ * subtree. Other nodes need no slot of their own: a ModelNode is drawn with the world matrix of its
+ * nearest TransformNode ancestor.
+ *
+ * An LODNode draws only one of its children, as in the tree. Its level is chosen when drawing, from a sphere
+ * around its bounds kept in the coordinates of its nearest TransformNode ancestor, so the sphere follows that
+ * slot's world matrix. The tree must have been updated before compiling, so that the LODNodes have bounds.
+ *
+ * The nodes are still changed through TransformNode.setTransform/setRotation. update() copies the local
+ * matrix of each node marked dirty and recalculates only the slots at or below a change. Once compiled,
+ * update and draw the subtree through this class rather than the nodes; the nodes' own worldTransform
+ * fields are not kept up to date. Compile again if children are added.
+ * All the transforms must be affine, as every Mat4Transform matrix other than perspective is.
+ */
+public class CompiledSceneGraph {
+
+  private final TransformNode[] transforms;  // by slot; transforms[0] is null
+  private final int[] parent;                // parent slot of each slot
+  private final float[] local;
+  private final float[] world;
+  private final boolean[] changed;
+  private boolean rootChanged = true;
+
+  private final ModelNode[] models;          // in draw order
+  private final int[] modelSlot;             // slot whose world matrix each model is drawn with
+  private final int[] modelLOD;              // the nearest LODNode each model is inside, or -1
+  private final int[] modelLevel;            // the level of that LODNode it is in
+  private final Mat4 drawTransform = new Mat4(1);
+
+  private final LODNode[] lods;              // in depth-first order, so an LODNode comes before those inside it
+  private final int[] lodSlot;               // slot whose world matrix each LODNode is placed with
+  private final int[] lodParent;             // the nearest LODNode each LODNode is inside, or -1
+  private final int[] lodLevel;              // the level of that LODNode it is in
+  private final float[] lodSphere;           // centre and radius of each LODNode's bounds in its slot's coordinates
+  private final int[] lodSelected;           // each LODNode's level this frame, or -1 if it is not drawn
+
+  public CompiledSceneGraph(SGNode root) {
+    this(root, root.worldTransform);
+  }
+
+  /**
+   * @param root The root of the subtree
+   * @param rootTransform The world transform of root's parent, i.e. where the subtree is placed
+   */
+  public CompiledSceneGraph(SGNode root, Mat4 rootTransform) {
+    Lists lists = new Lists();
+    lists.transforms.add(null);
+    lists.parents.add(-1);
+    flatten(root, 0, -1, 0, lists);
+
+    int n = lists.transforms.size();
+    transforms = lists.transforms.toArray(new TransformNode[n]);
+    parent = new int[n];
+    local = new float[n*16];
+    world = new float[n*16];
+    changed = new boolean[n];
+    for (int s=0; s<n; ++s) {
+      parent[s] = lists.parents.get(s);
+      if (s > 0) transforms[s].getTransform().storeRowMajor(local, s*16);
+    }
+    rootTransform.storeRowMajor(world, 0);
+
+    models = lists.models.toArray(new ModelNode[lists.models.size()]);
+    modelSlot = toArray(lists.modelSlots);
+    modelLOD = toArray(lists.modelLODs);
+    modelLevel = toArray(lists.modelLevels);
+
+    lods = lists.lods.toArray(new LODNode[lists.lods.size()]);
+    lodSlot = toArray(lists.lodSlots);
+    lodParent = toArray(lists.lodParents);
+    lodLevel = toArray(lists.lodLevels);
+    lodSphere = new float[lods.length*4];
+    lodSelected = new int[lods.length];
+    update();
+    Mat4 slotWorld = new Mat4(1), inverse = new Mat4(1);
+    for (int l=0; l<lods.length; ++l) {
+      setLocalSphere(l, slotWorld, inverse);
+    }
+  }
+
+  // the lists flatten fills, made into the arrays
+  private static final class Lists {
+    ArrayList<TransformNode> transforms = new ArrayList<TransformNode>();
+    ArrayList<Integer> parents = new ArrayList<Integer>();
+    ArrayList<ModelNode> models = new ArrayList<ModelNode>();
+    ArrayList<Integer> modelSlots = new ArrayList<Integer>(), modelLODs = new ArrayList<Integer>(), modelLevels = new ArrayList<Integer>();
+    ArrayList<LODNode> lods = new ArrayList<LODNode>();
+    ArrayList<Integer> lodSlots = new ArrayList<Integer>(), lodParents = new ArrayList<Integer>(), lodLevels = new ArrayList<Integer>();
+  }
+
+  private static void flatten(SGNode node, int slot, int lod, int level, Lists lists) {
+    if (node instanceof ModelNode) {
+      lists.models.add((ModelNode)node);
+      lists.modelSlots.add(slot);
+      lists.modelLODs.add(lod);
+      lists.modelLevels.add(level);
+    }
+    int childSlot = slot;
+    if (node instanceof TransformNode) {
+      childSlot = lists.transforms.size();
+      lists.transforms.add((TransformNode)node);
+      lists.parents.add(slot);
+      node.dirty = false;
+    }
+    if (node instanceof LODNode) {
+      lists.lodSlots.add(slot);
+      lists.lodParents.add(lod);
+      lists.lodLevels.add(level);
+      lod = lists.lods.size();
+      lists.lods.add((LODNode)node);
+    }
+    for (int i=0; i<node.children.size(); i++) {
+      flatten(node.children.get(i), childSlot, lod, (node instanceof LODNode) ? i : level, lists);
+    }
+  }
+
+  private static int[] toArray(ArrayList<Integer> list) {
+    int[] a = new int[list.size()];
+    for (int i=0; i<a.length; ++i) {
+      a[i] = list.get(i);
+    }
+    return a;
+  }
+
+  // moves the sphere around LODNode l's world bounds into the coordinates of its slot
+  private void setLocalSphere(int l, Mat4 slotWorld, Mat4 inverse) {
+    AABB b = lods[l].bounds;
+    int o = lodSlot[l]*16;
+    float scale = scale(world, o);
+    if (b.isEmpty() || scale == 0) {
+      lodSphere[l*4+3] = -1;
+      return;
+    }
+    float dx = b.max.x-b.min.x, dy = b.max.y-b.min.y, dz = b.max.z-b.min.z;
+    float x = 0.5f*(b.min.x+b.max.x), y = 0.5f*(b.min.y+b.max.y), z = 0.5f*(b.min.z+b.max.z);
+    slotWorld.loadRowMajor(world, o);
+    Mat4.inverseAffine(slotWorld, inverse);
+    lodSphere[l*4] = inverse.get(0,0)*x + inverse.get(0,1)*y + inverse.get(0,2)*z + inverse.get(0,3);
+    lodSphere[l*4+1] = inverse.get(1,0)*x + inverse.get(1,1)*y + inverse.get(1,2)*z + inverse.get(1,3);
+    lodSphere[l*4+2] = inverse.get(2,0)*x + inverse.get(2,1)*y + inverse.get(2,2)*z + inverse.get(2,3);
+    lodSphere[l*4+3] = 0.5f*(float)Math.sqrt(dx*dx + dy*dy + dz*dz)/scale;
+  }
+
+  // the largest length of the columns of the upper 3x3 of the row-major matrix at m[o]: exact for rotations and uniform scales
+  private static float scale(float[] m, int o) {
+    float max = 0;
+    for (int j=0; j<3; ++j) {
+      max = Math.max(max, m[o+j]*m[o+j] + m[o+4+j]*m[o+4+j] + m[o+8+j]*m[o+8+j]);
+    }
+    return (float)Math.sqrt(max);
+  }
+
+  // chooses the level of each LODNode that will be drawn, from its sphere placed with its slot's world matrix
+  private void selectLevels() {
+    for (int l=0; l<lods.length; ++l) {
+      int p = lodParent[l];
+      if (p >= 0 && lodSelected[p] != lodLevel[l]) {
+        lodSelected[l] = -1;
+        continue;
+      }
+      float size = 0;
+      float radius = lodSphere[l*4+3];
+      if (radius >= 0) {
+        int o = lodSlot[l]*16;
+        float x = lodSphere[l*4], y = lodSphere[l*4+1], z = lodSphere[l*4+2];
+        size = lods[l].getScreenSize(world[o]*x + world[o+1]*y + world[o+2]*z + world[o+3],
+                                     world[o+4]*x + world[o+5]*y + world[o+6]*z + world[o+7],
+                                     world[o+8]*x + world[o+9]*y + world[o+10]*z + world[o+11], radius*scale(world, o));
+      }
+      lodSelected[l] = lods[l].selectLevel(size);
+    }
+  }
+
+  private boolean isDrawn(int model) {
+    int l = modelLOD[model];
+    return l < 0 || lodSelected[l] == modelLevel[model];
+  }
+
+  public int getTransformCount() {
+    return transforms.length-1;
+  }
+
+  /**
+   * Sets the transform the subtree is placed with.
+   */
+  public void setRootTransform(Mat4 m) {
+    m.storeRowMajor(world, 0);
+    rootChanged = true;
+  }
+
+  /**
+   * Recalculates the world matrices of the slots at or below a changed TransformNode.
+   */
+  public void update() {
+    changed[0] = rootChanged;
+    rootChanged = false;
+    for (int s=1; s<transforms.length; ++s) {
+      TransformNode t = transforms[s];
+      boolean c = changed[parent[s]];
+      if (t.dirty) {
+        t.getTransform().storeRowMajor(local, s*16);
+        t.dirty = false;
+        c = true;
+      }
+      changed[s] = c;
+      if (c) Mat4Batch.multiplyAffine(world, parent[s]*16, local, s*16, world, s*16);
+    }
+  }
+
+  /**
+   * Copies the world matrix that the children of transform slot s are placed with into dest.
+   */
+  public void getWorldTransform(int s, Mat4 dest) {
+    dest.loadRowMajor(world, s*16);
+  }
+
+  public void draw(GL3 gl) {
+    selectLevels();
+    for (int i=0; i<models.length; ++i) {
+      if (!isDrawn(i)) continue;
+      drawTransform.loadRowMajor(world, modelSlot[i]*16);
+      models[i].model.render(gl, drawTransform);
+    }
+  }
+
+  public void draw(RenderQueue queue) {
+    selectLevels();
+    for (int i=0; i<models.length; ++i) {
+      if (!isDrawn(i)) continue;
+      drawTransform.loadRowMajor(world, modelSlot[i]*16);
+      queue.add(models[i].model, drawTransform);
+    }
+  }
+
+}
@@ -0,0 +1,283 @@
+import gmaths.*;
+import java.util.Arrays;
+
+/**
+ * A bounding volume hierarchy over models that are not in a scene graph, such as the walls and the globe.
+ * Culling and picking test a node's box first and skip everything below it if the node can be rejected,
+ * so a scene of n models costs about log n tests for the parts out of view rather than n.
+ *
+ * The tree is a binary tree kept in arrays. Each model is a leaf whose box is its world box grown by
+ * a margin, so a model that moves a little stays inside its leaf box and the tree does not change.
+ * A new leaf is placed next to the node that increases the total surface area of the tree the least
+ * (the surface area heuristic, as in Box2D's dynamic tree). Trees are not rebalanced by rotations.
+ *
+ * insert() returns a proxy, the leaf's index, which stays the same until the model is removed. After
+ * changing a model's matrix, call update() with its proxy.
+ */
+public class DynamicBVH {
+
+  private static final int NONE = -1;
+  private static final float DEFAULT_MARGIN = 0.1f;
+
+  private AABB[] boxes = new AABB[16];
+  private int[] parent = new int[16];
+  private int[] child1 = new int[16];     // NONE for a leaf
+  private int[] child2 = new int[16];
+  private int[] leafCount = new int[16];  // the number of models under the node
+  private ModelMultipleLights[] models = new ModelMultipleLights[16];
+  private int nodeCount = 0;
+  private int free = NONE;                // list of unused nodes, linked through parent
+  private int root = NONE;
+  private float margin;
+
+  private AABB box = new AABB();
+  private AABB combined = new AABB();
+
+  public DynamicBVH() {
+    this(DEFAULT_MARGIN);
+  }
+
+  /**
+   * @param margin How far a leaf box extends beyond its model's world box
+   */
+  public DynamicBVH(float margin) {
+    this.margin = margin;
+  }
+
+  /**
+   * Adds a model, using its own model matrix, and returns its proxy.
+   */
+  public int insert(ModelMultipleLights model) {
+    int leaf = allocate();
+    models[leaf] = model;
+    leafCount[leaf] = 1;
+    worldBounds(model, boxes[leaf]);
+    boxes[leaf].expand(margin);
+    insertLeaf(leaf);
+    return leaf;
+  }
+
+  public void remove(int proxy) {
+    removeLeaf(proxy);
+    models[proxy] = null;
+    release(proxy);
+  }
+
+  /**
+   * Refits a model after its model matrix has changed. Only if the model has moved out of its leaf box
+   * is the leaf taken out and inserted again.
+   * @return true if the tree changed
+   */
+  public boolean update(int proxy) {
+    worldBounds(models[proxy], box);
+    if (boxes[proxy].contains(box)) return false;
+    removeLeaf(proxy);
+    boxes[proxy].set(box);
+    boxes[proxy].expand(margin);
+    insertLeaf(proxy);
+    return true;
+  }
+
+  public ModelMultipleLights getModel(int proxy) {
+    return models[proxy];
+  }
+
+  /**
+   * Returns the number of models in the tree.
+   */
+  public int size() {
+    return (root == NONE) ? 0 : leafCount[root];
+  }
+
+  /**
+   * Returns the number of nodes on the longest path from the root to a leaf.
+   */
+  public int getHeight() {
+    return height(root);
+  }
+
+  private int height(int node) {
+    if (node == NONE) return 0;
+    return 1 + Math.max(height(child1[node]), height(child2[node]));
+  }
+
+  private void worldBounds(ModelMultipleLights model, AABB dest) {
+    AABB.transform(model.getMesh().getBounds(), model.getModelMatrix(), dest);
+  }
+
+  private boolean isLeaf(int node) {
+    return child1[node] == NONE;
+  }
+
+  private int allocate() {
+    int node;
+    if (free != NONE) {
+      node = free;
+      free = parent[node];
+    }
+    else {
+      if (nodeCount == boxes.length) grow();
+      node = nodeCount++;
+      boxes[node] = new AABB();
+    }
+    parent[node] = NONE;
+    child1[node] = NONE;
+    child2[node] = NONE;
+    return node;
+  }
+
+  private void release(int node) {
+    parent[node] = free;
+    free = node;
+  }
+
+  private void grow() {
+    int n = boxes.length*2;
+    AABB[] b = new AABB[n];
+    System.arraycopy(boxes, 0, b, 0, nodeCount);
+    boxes = b;
+    parent = Arrays.copyOf(parent, n);
+    child1 = Arrays.copyOf(child1, n);
+    child2 = Arrays.copyOf(child2, n);
+    leafCount = Arrays.copyOf(leafCount, n);
+    models = Arrays.copyOf(models, n);
+  }
+
+  private void insertLeaf(int leaf) {
+    if (root == NONE) {
+      root = leaf;
+      parent[leaf] = NONE;
+      return;
+    }
+    AABB leafBox = boxes[leaf];
+
+    // walk down to the sibling that adds the least area: stopping at a node costs the area of a new
+    // parent over it and the leaf; every node above pays for growing to include the leaf either way
+    int index = root;
+    while (!isLeaf(index)) {
+      float area = boxes[index].halfArea();
+      float combinedArea = unionArea(boxes[index], leafBox);
+      float cost = 2*combinedArea;
+      float inheritance = 2*(combinedArea-area);
+      float cost1 = descendCost(child1[index], leafBox) + inheritance;
+      float cost2 = descendCost(child2[index], leafBox) + inheritance;
+      if (cost < cost1 && cost < cost2) break;
+      index = (cost1 < cost2) ? child1[index] : child2[index];
+    }
+
+    int sibling = index;
+    int oldParent = parent[sibling];
+    int newParent = allocate();
+    parent[newParent] = oldParent;
+    child1[newParent] = sibling;
+    child2[newParent] = leaf;
+    parent[sibling] = newParent;
+    parent[leaf] = newParent;
+    if (oldParent == NONE) {
+      root = newParent;
+    }
+    else if (child1[oldParent] == sibling) {
+      child1[oldParent] = newParent;
+    }
+    else {
+      child2[oldParent] = newParent;
+    }
+    refit(newParent);
+  }
+
+  // the cost of putting the leaf below node
+  private float descendCost(int node, AABB leafBox) {
+    float area = unionArea(boxes[node], leafBox);
+    return isLeaf(node) ? area : area-boxes[node].halfArea();
+  }
+
+  private float unionArea(AABB a, AABB b) {
+    combined.set(a);
+    combined.include(b);
+    return combined.halfArea();
+  }
+
+  private void removeLeaf(int leaf) {
+    if (leaf == root) {
+      root = NONE;
+      return;
+    }
+    int p = parent[leaf];
+    int grandParent = parent[p];
+    int sibling = (child1[p] == leaf) ? child2[p] : child1[p];
+    if (grandParent == NONE) {
+      root = sibling;
+      parent[sibling] = NONE;
+    }
+    else {
+      if (child1[grandParent] == p) child1[grandParent] = sibling;
+      else child2[grandParent] = sibling;
+      parent[sibling] = grandParent;
+      refit(grandParent);
+    }
+    release(p);
+    parent[leaf] = NONE;
+  }
+
+  // recalculates the boxes and counts from node up to the root
+  private void refit(int node) {
+    for (int i = node; i != NONE; i = parent[i]) {
+      int a = child1[i], b = child2[i];
+      boxes[i].set(boxes[a]);
+      boxes[i].include(boxes[b]);
+      leafCount[i] = leafCount[a]+leafCount[b];
+    }
+  }
+
+  /**
+   * Adds the models inside the queue's frustum to the queue. Nodes outside the frustum are skipped
+   * with one test and nodes inside it are added without further tests.
+   */
+  public void draw(RenderQueue queue) {
+    if (root != NONE) draw(root, queue, queue.getFrustum());
+  }
+
+  private void draw(int node, RenderQueue queue, Frustum frustum) {
+    if (frustum != null) {
+      int c = frustum.classify(boxes[node]);
+      if (c == Frustum.OUTSIDE) {
+        queue.addCulled(leafCount[node]);
+        return;
+      }
+      if (c == Frustum.INSIDE) frustum = null;
+    }
+    if (isLeaf(node)) {
+      ModelMultipleLights model = models[node];
+      if (frustum == null) queue.addVisible(model, model.getModelMatrix());
+      else queue.add(model, model.getModelMatrix());  // tests the model's own box, tighter than the leaf's
+      return;
+    }
+    draw(child1[node], queue, frustum);
+    draw(child2[node], queue, frustum);
+  }
+
+  /**
+   * Returns the model whose world box the ray from origin in direction enters first, or null if it hits none.
+   */
+  public ModelMultipleLights pick(Vec3 origin, Vec3 direction) {
+    int[] hit = {NONE};
+    if (root != NONE) pick(root, origin, direction, Float.POSITIVE_INFINITY, hit);
+    return (hit[0] == NONE) ? null : models[hit[0]];
+  }
+
+  private float pick(int node, Vec3 origin, Vec3 direction, float nearest, int[] hit) {
+    if (boxes[node].intersectRay(origin, direction) >= nearest) return nearest;
+    if (isLeaf(node)) {
+      worldBounds(models[node], box);
+      float t = box.intersectRay(origin, direction);
+      if (t < nearest) {
+        nearest = t;
+        hit[0] = node;
+      }
+      return nearest;
+    }
+    nearest = pick(child1[node], origin, direction, nearest, hit);
+    return pick(child2[node], origin, direction, nearest, hit);
+  }
+
+}
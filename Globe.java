@@ -21,9 +21,20 @@ public class Globe {
     private Light[] lights;
     private ModelMultipleLights globe, globestand, centralaxis;
     private float backWallLength, otherWallLength, wallThickness, pathGapFromWall, globeDistanceFromPath;
+    private Vec3 globePosition, globeScale = new Vec3(1.5f,1.5f,1.5f);
+    private Mat4 globeMatrix = new Mat4(1);
+    private DynamicBVH bvh;
+    private int globeProxy;
+    // the globe's levels of detail: globe is drawn with the mesh of the one globeLOD chooses
+    private static final float[] LOD_SIZES = {0.2f, 0.08f, 0.03f};
+    private ModelMultipleLights[] globeLevels = new ModelMultipleLights[Sphere.LEVELS.length];
+    private TransformNode globeTransform;
+    private LODNode globeLOD;
 
     public void dispose(GL3 gl) {
-        globe.dispose(gl);
+        for (ModelMultipleLights level : globeLevels) {
+            level.dispose(gl);  // globe holds no mesh reference of its own
+        }
         globestand.dispose(gl);
         centralaxis.dispose(gl);
     }
@@ -48,28 +59,38 @@ public class Globe {
         this.wallThickness = wallThickIn;
         this.pathGapFromWall = pathwallGap;
         this.globeDistanceFromPath = globePathGap;
+        this.globePosition = new Vec3((((backWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath),2f,(((otherWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath));
 
         String name = "globe";
-        Mesh mesh = new Mesh(gl, Sphere.vertices.clone(), Sphere.indices.clone());
-        Shader shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+        Mesh mesh = MeshCache.get(gl, Sphere.vertices, Sphere.indices);
+        Shader shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
         Material material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
         Mat4 modelMatrix = Mat4Transform.translate(0,0,0);
         modelMatrix = Mat4.multiply(modelMatrix, Mat4Transform.scale(1.5f,1.5f,1.5f));
         modelMatrix = Mat4.multiply(modelMatrix, Mat4Transform.translate(0,0,0));
         modelMatrix = Mat4.multiply(modelMatrix, Mat4Transform.translate((((backWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath)/1.5f,-1.25f,(((otherWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath)/1.5f));
         globe = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("earth_map"), textures.get("earth_specular"));
+        globeTransform = new TransformNode("globe transform", modelMatrix);
+        globeLOD = new LODNode(name, camera, LOD_SIZES);
+        globeTransform.addChild(globeLOD);
+        for (int i=0; i<globeLevels.length; ++i) {
+            Mesh levelMesh = (i == 0) ? mesh : MeshCache.get(gl, Sphere.levelVertices(i), Sphere.levelIndices(i));
+            globeLevels[i] = new ModelMultipleLights(name+" lod "+i, levelMesh, modelMatrix, shader, material, lights, camera, textures.get("earth_map"), textures.get("earth_specular"));
+            globeLOD.addChild(new ModelNode(name+" lod "+i, globeLevels[i]));
+        }
+        globeTransform.update();
 
         name = "globeStand";
-        mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-        shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+        mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+        shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
         material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
         modelMatrix = Mat4.multiply(Mat4Transform.scale(1f,1f,1f),Mat4Transform.rotateAroundY(-45f));
         modelMatrix = Mat4.multiply(Mat4Transform.translate((((backWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath),0.5f,(((otherWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath)), modelMatrix);
         globestand = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("diffuse_container"), textures.get("specular_container"));
 
         name = "globeCentralAxis";
-        mesh = new Mesh(gl, Sphere.vertices.clone(), Sphere.indices.clone());
-        shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+        mesh = MeshCache.get(gl, Sphere.vertices, Sphere.indices);
+        shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
         material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
         modelMatrix = Mat4Transform.translate(0,0,0);
         modelMatrix = Mat4.multiply(modelMatrix, Mat4Transform.scale(0.15f,2.75f,.15f));
@@ -80,11 +101,54 @@ public class Globe {
     public void render(GL3 gl, double elapsedTime) {
         Mat4 matrix = globeRotation(elapsedTime);
         globe.setModelMatrix(matrix);
+        selectLevel(matrix);
         globe.render(gl);
         globestand.render(gl);
         centralaxis.render(gl);
     }
 
+    public void render(RenderQueue queue, double elapsedTime) {
+        Mat4 matrix = globeRotation(elapsedTime);
+        globe.setModelMatrix(matrix);
+        selectLevel(matrix);
+        queue.add(globe);
+        queue.add(globestand);
+        queue.add(centralaxis);
+    }
+
+    /**
+     * Adds the globe's parts to a bounding volume hierarchy, which then culls and draws them.
+     * The globe itself turns, so update() refits it in the hierarchy.
+     * @param bvh DynamicBVH for the scene
+     */
+    public void addTo(DynamicBVH bvh) {
+        this.bvh = bvh;
+        globeProxy = bvh.insert(globe);
+        bvh.insert(globestand);
+        bvh.insert(centralaxis);
+    }
+
+    /**
+     * Turns the globe without drawing it, for when it is drawn through a DynamicBVH.
+     * @param elapsedTime
+     */
+    public void update(double elapsedTime) {
+        Mat4 matrix = globeRotation(elapsedTime);
+        globe.setModelMatrix(matrix);
+        selectLevel(matrix);
+        if (bvh != null) bvh.update(globeProxy);
+    }
+
+    /**
+     * Gives the globe the mesh of the level of detail for its size on the screen.
+     * @param matrix Mat4 of the globe's current model matrix
+     */
+    private void selectLevel(Mat4 matrix) {
+        globeTransform.setTransform(matrix);
+        globeTransform.update();
+        globe.setMesh(globeLevels[globeLOD.selectLevel()].getMesh());
+    }
+
     /**
      * Method for rotating the globe based on elapsedTime for smooth rotating.
      * @param elapsedTime
@@ -92,11 +156,9 @@ public class Globe {
      */
     private Mat4 globeRotation(double elapsedTime) {
         float angle = (float)(elapsedTime*-50);
-        Mat4 rotationMatrix = Mat4Transform.rotateAroundY(angle);
-        Mat4 modelMatrix = Mat4.multiply(Mat4Transform.translate(0,0,0), rotationMatrix);
-        modelMatrix = Mat4.multiply(Mat4Transform.scale(1.5f,1.5f,1.5f), modelMatrix);
-        modelMatrix = Mat4.multiply(Mat4Transform.translate((((backWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath),2f,(((otherWallLength / 2) + (wallThickness / 2)) - pathGapFromWall - globeDistanceFromPath)), modelMatrix);
-        return modelMatrix;
+        Mat4Transform.rotateAroundY(angle, globeMatrix);
+        Mat4Transform.composeTRS(globePosition, globeMatrix, globeScale, globeMatrix);
+        return globeMatrix;
       }
 
 }
@@ -0,0 +1,63 @@
+import java.nio.*;
+import com.jogamp.opengl.*;
+
+/**
+ * The type of the values in an element (index) buffer. A mesh uses the smallest one that can index all its
+ * vertices: a byte for up to 256 vertices (Cube, TwoTriangles), a short for up to 65536 (Sphere), and an int
+ * for more.
+ */
+public enum IndexType {
+
+  BYTE(GL.GL_UNSIGNED_BYTE, 1), SHORT(GL.GL_UNSIGNED_SHORT, 2), INT(GL.GL_UNSIGNED_INT, 4);
+
+  private final int glType;
+  private final int bytes;
+
+  private IndexType(int glType, int bytes) {
+    this.glType = glType;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Returns the smallest type that can index vertexCount vertices.
+   */
+  public static IndexType forVertices(int vertexCount) {
+    if (vertexCount <= 1 << 8) return BYTE;
+    if (vertexCount <= 1 << 16) return SHORT;
+    return INT;
+  }
+
+  /**
+   * Returns the type to pass to glDrawElements.
+   */
+  public int getGLType() {
+    return glType;
+  }
+
+  public int getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the indices as values of this type, ready for glBufferData.
+   * @throws IllegalArgumentException if an index is negative or too big for the type
+   */
+  public ByteBuffer pack(int[] indices) {
+    long max = (this == INT) ? 0xffffffffL : (1L << (bytes*8))-1;
+    ByteBuffer b = ByteBuffer.allocateDirect(indices.length*bytes).order(ByteOrder.nativeOrder());
+    for (int i=0; i<indices.length; ++i) {
+      int index = indices[i];
+      if (index < 0 || index > max) {
+        throw new IllegalArgumentException("IndexType: index "+index+" does not fit in "+this);
+      }
+      switch (this) {
+        case BYTE: b.put((byte)index); break;
+        case SHORT: b.putShort((short)index); break;
+        case INT: b.putInt(index); break;
+      }
+    }
+    b.flip();
+    return b;
+  }
+
+}
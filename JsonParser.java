@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * A small JSON parser for scene files. Objects become LinkedHashMaps (keeping the key order),
+ * arrays ArrayLists, numbers Doubles, and true, false and null Boolean and null.
+ */
+public class JsonParser {
+
+  private final String text;
+  private int pos = 0;
+
+  private JsonParser(String text) {
+    this.text = text;
+  }
+
+  /**
+   * @throws IllegalArgumentException if text is not valid JSON
+   */
+  public static Object parse(String text) {
+    JsonParser p = new JsonParser(text);
+    Object value = p.value();
+    p.skipWhitespace();
+    if (p.pos != text.length()) throw p.error("unexpected text after the value");
+    return value;
+  }
+
+  private Object value() {
+    skipWhitespace();
+    if (pos >= text.length()) throw error("unexpected end");
+    char c = text.charAt(pos);
+    switch (c) {
+      case '{': return object();
+      case '[': return array();
+      case '"': return string();
+      case 't': return literal("true", Boolean.TRUE);
+      case 'f': return literal("false", Boolean.FALSE);
+      case 'n': return literal("null", null);
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) return number();
+        throw error("unexpected '"+c+"'");
+    }
+  }
+
+  private LinkedHashMap<String,Object> object() {
+    LinkedHashMap<String,Object> map = new LinkedHashMap<String,Object>();
+    pos++;
+    skipWhitespace();
+    if (peek() == '}') {
+      pos++;
+      return map;
+    }
+    while (true) {
+      skipWhitespace();
+      if (peek() != '"') throw error("expected a key");
+      String key = string();
+      skipWhitespace();
+      expect(':');
+      map.put(key, value());
+      skipWhitespace();
+      if (peek() == ',') {
+        pos++;
+      }
+      else {
+        expect('}');
+        return map;
+      }
+    }
+  }
+
+  private ArrayList<Object> array() {
+    ArrayList<Object> list = new ArrayList<Object>();
+    pos++;
+    skipWhitespace();
+    if (peek() == ']') {
+      pos++;
+      return list;
+    }
+    while (true) {
+      list.add(value());
+      skipWhitespace();
+      if (peek() == ',') {
+        pos++;
+      }
+      else {
+        expect(']');
+        return list;
+      }
+    }
+  }
+
+  private String string() {
+    StringBuilder sb = new StringBuilder();
+    pos++;
+    while (true) {
+      if (pos >= text.length()) throw error("unterminated string");
+      char c = text.charAt(pos++);
+      if (c == '"') return sb.toString();
+      if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      if (pos >= text.length()) throw error("unterminated string");
+      char e = text.charAt(pos++);
+      switch (e) {
+        case 'n': sb.append('\n'); break;
+        case 't': sb.append('\t'); break;
+        case 'r': sb.append('\r'); break;
+        case 'b': sb.append('\b'); break;
+        case 'f': sb.append('\f'); break;
+        case 'u':
+          if (pos+4 > text.length()) throw error("bad \\u escape");
+          sb.append((char)Integer.parseInt(text.substring(pos, pos+4), 16));
+          pos += 4;
+          break;
+        default: sb.append(e);  // \" \\ \/
+      }
+    }
+  }
+
+  private Double number() {
+    int start = pos;
+    while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+      pos++;
+    }
+    try {
+      return Double.valueOf(text.substring(start, pos));
+    }
+    catch (NumberFormatException e) {
+      pos = start;
+      throw error("bad number");
+    }
+  }
+
+  private Object literal(String word, Object value) {
+    if (!text.startsWith(word, pos)) throw error("unexpected text");
+    pos += word.length();
+    return value;
+  }
+
+  private void skipWhitespace() {
+    while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+      pos++;
+    }
+  }
+
+  private char peek() {
+    return (pos < text.length()) ? text.charAt(pos) : 0;
+  }
+
+  private void expect(char c) {
+    if (peek() != c) throw error("expected '"+c+"'");
+    pos++;
+  }
+
+  private IllegalArgumentException error(String message) {
+    int line = 1;
+    for (int i=0; i<pos && i<text.length(); ++i) {
+      if (text.charAt(i) == '\n') line++;
+    }
+    return new IllegalArgumentException("JSON: "+message+" on line "+line);
+  }
+
+}
@@ -0,0 +1,101 @@
+import gmaths.*;
+import com.jogamp.opengl.*;
+
+/**
+ * A node that draws only one of its children, the levels of detail, chosen by how big the node looks from
+ * the camera, so that a model covering a few pixels is drawn with a mesh of few triangles. The children are
+ * the levels, the most detailed first; usually each is a ModelNode of the same model with a coarser mesh.
+ *
+ * The size is the diameter of the sphere around the node's bounds on the screen, as a fraction of the screen
+ * height. Level i is used while the size is at least sizes[i], and the last level below the last size.
+ * A level only changes once the size is HYSTERESIS past the boundary, so a model near a boundary does not
+ * flicker between two levels. The level is chosen when the node is drawn.
+ */
+public class LODNode extends SGNode {
+
+  public static final float HYSTERESIS = 0.15f;  // as a fraction of the boundary size
+
+  private Camera camera;
+  private float[] sizes;
+  private int level = 0;
+  private Vec3 eye = new Vec3();  // the camera position, reused each frame
+
+  /**
+   * @param sizes The smallest size at which each level but the last is used, largest first
+   */
+  public LODNode(String name, Camera camera, float[] sizes) {
+    super(name);
+    this.camera = camera;
+    this.sizes = sizes.clone();
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Returns the size of the node on the screen, as of the last update().
+   */
+  public float getScreenSize() {
+    if (bounds.isEmpty()) return 0;
+    float dx = bounds.max.x-bounds.min.x, dy = bounds.max.y-bounds.min.y, dz = bounds.max.z-bounds.min.z;
+    float radius = 0.5f*(float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+    return getScreenSize(0.5f*(bounds.min.x+bounds.max.x), 0.5f*(bounds.min.y+bounds.max.y), 0.5f*(bounds.min.z+bounds.max.z), radius);
+  }
+
+  /**
+   * Returns the size on the screen of a sphere in world coordinates, as for the node's bounds.
+   */
+  public float getScreenSize(float x, float y, float z, float radius) {
+    camera.getPosition(eye);
+    float cx = x-eye.x, cy = y-eye.y, cz = z-eye.z;
+    float distance = (float)Math.sqrt(cx*cx + cy*cy + cz*cz);
+    if (distance <= radius) return Float.POSITIVE_INFINITY;
+    // the perspective matrix scales y by cot(fov/2), making the screen 2 high at distance 1
+    return radius*camera.getPerspectiveMatrix().get(1,1)/distance;
+  }
+
+  /**
+   * Chooses the level for the current size and returns it.
+   */
+  public int selectLevel() {
+    return selectLevel(getScreenSize());
+  }
+
+  /**
+   * Chooses the level for a size from getScreenSize and returns it.
+   */
+  public int selectLevel(float size) {
+    int last = Math.min(sizes.length, children.size()-1);
+    if (last <= 0) return level = 0;
+    level = Math.min(level, last);
+    while (level > 0 && size > sizes[level-1]*(1+HYSTERESIS)) {
+      level--;
+    }
+    while (level < last && size < sizes[level]*(1-HYSTERESIS)) {
+      level++;
+    }
+    return level;
+  }
+
+  public void draw(GL3 gl) {
+    if (children.isEmpty()) return;
+    children.get(selectLevel()).draw(gl);
+  }
+
+  protected void drawChildren(RenderQueue queue, Frustum frustum) {
+    if (children.isEmpty()) return;
+    children.get(selectLevel()).draw(queue, frustum);
+  }
+
+  // counts the models of one level, as only one is drawn
+  protected void updateBounds() {
+    super.updateBounds();
+    modelCount = children.isEmpty() ? 0 : children.get(0).modelCount;
+  }
+
+  protected float pickChildren(Vec3 origin, Vec3 direction, float nearest, ModelNode[] hit) {
+    return children.isEmpty() ? nearest : children.get(level).pick(origin, direction, nearest, hit);
+  }
+
+}
@@ -14,6 +14,9 @@ public class Light {
   private Material material;
   private Vec3 position = new Vec3(0,0,0);
   private Mat4 model = Mat4.multiply(Mat4Transform.scale(.1f,.1f,.1f), Mat4Transform.translate(-6,1.1f + 0.375f,-9));
+  private Mat4 mvpMatrix = new Mat4(1);
+  private AABB bounds = new AABB();
+  private AABB worldBounds = new AABB();
   
   private Shader shader;
   private Camera camera;
@@ -44,8 +47,9 @@ public class Light {
     material.setSpecular(0.8f, 0.8f, 0.8f);
     position = new Vec3(3f,2f,1f);
     
-    shader = new Shader(gl, "assets/shaders/vs_light_01.txt", "assets/shaders/fs_light_01.txt");
+    shader = Shader.get(gl, "assets/shaders/vs_light_01.txt", "assets/shaders/fs_light_01.txt");
 
+    bounds.include(vertices, 0, vertexStride, vertices.length/vertexStride);
     fillBuffers(gl);
   }
   
@@ -163,21 +167,31 @@ public class Light {
     return this.model;
   }
   public void setModel(Mat4 m) {
-    this.model = m;
+    this.model.set(m);
   }
   
   public void render(GL3 gl) { 
-    model = new Mat4(1);
-    model = Mat4.multiply(Mat4Transform.scale(0.1f,0.1f,0.1f), model);
-    model = Mat4.multiply(Mat4Transform.translate(position), model);
+    Mat4Transform.scale(0.1f,0.1f,0.1f, model);  // translate(position)*scale(0.1f)
+    model.set(0,3, position.x);
+    model.set(1,3, position.y);
+    model.set(2,3, position.z);
+
+    AABB.transform(bounds, model, worldBounds);
+    if (!camera.isVisible(worldBounds)) {
+      camera.getRenderStats().addCulled();
+      return;
+    }
+    camera.getRenderStats().addDrawn();
+    camera.getRenderStats().addTriangles(indices.length/3);
    
-    Mat4 mvpMatrix = Mat4.multiply(camera.getPerspectiveMatrix(), Mat4.multiply(camera.getViewMatrix(), model));
+    Mat4.multiplyInto(camera.getViewMatrix(), model, mvpMatrix);
+    Mat4.multiplyInto(camera.getPerspectiveMatrix(), mvpMatrix, mvpMatrix);
 
     shader.use(gl);
-    shader.setFloatArray(gl, "mvpMatrix", mvpMatrix.toFloatArrayForGLSL());
+    shader.setMat4(gl, "mvpMatrix", mvpMatrix);
 
     gl.glBindVertexArray(vertexArrayId[0]);
-    gl.glDrawElements(GL.GL_TRIANGLES, indices.length, GL.GL_UNSIGNED_INT, 0);
+    gl.glDrawElements(GL.GL_TRIANGLES, indices.length, indexType.getGLType(), 0);
     gl.glBindVertexArray(0);
   }
 
@@ -220,6 +234,7 @@ public class Light {
     
   private int vertexStride = 3;
   private int vertexXYZFloats = 3;
+  private IndexType indexType = IndexType.forVertices(vertices.length/vertexStride);
   
   // ***************************************************
   /* THE LIGHT BUFFERS
@@ -245,9 +260,9 @@ public class Light {
     gl.glEnableVertexAttribArray(0);
      
     gl.glGenBuffers(1, elementBufferId, 0);
-    IntBuffer ib = Buffers.newDirectIntBuffer(indices);
+    ByteBuffer ib = indexType.pack(indices);
     gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, elementBufferId[0]);
-    gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, Integer.BYTES * indices.length, ib, GL.GL_STATIC_DRAW);
+    gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, ib.remaining(), ib, GL.GL_STATIC_DRAW);
 
   } 
 
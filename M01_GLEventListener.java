@@ -13,6 +13,7 @@ import com.jogamp.opengl.util.glsl.*;
 public class M01_GLEventListener implements GLEventListener {
   
   private static final boolean DISPLAY_SHADERS = false;
+  private static final boolean DISPLAY_RENDER_STATS = false;  // prints the bind, drawn and culled counts every 100 frames
   private Camera camera; 
   public M01_GLEventListener(Camera camera) {
     this.camera = camera;
@@ -60,6 +61,8 @@ public class M01_GLEventListener implements GLEventListener {
     robot1.dispose(gl);
     robot2.dispose(gl);
     disposeModels(gl);
+    renderQueue.dispose(gl);
+    Shader.clearCache(gl);
   }
 
   // ***************************************************
@@ -79,6 +82,9 @@ public class M01_GLEventListener implements GLEventListener {
   private Skybox skybox;
   private ModelMultipleLights fakeskybox;
   private Light[] lights = new Light[2];
+  private RenderQueue renderQueue = new RenderQueue();
+  private DynamicBVH sceneBVH = new DynamicBVH();  // the models that are not in a robot's scene graph
+  private int frameCount = 0;
   private boolean overridePause = false;
   private boolean robot1Paused;
   private Vec3 robot1Pos;
@@ -111,7 +117,6 @@ public class M01_GLEventListener implements GLEventListener {
 
     //Globe
     globe.dispose(gl);
-    robot1.dispose(gl);
 
 
     textures.destroy(gl);
@@ -197,6 +202,8 @@ public class M01_GLEventListener implements GLEventListener {
     walls = new Walls(gl, wallThickness, wallHeight, backWallLength, otherWallLength, camera, lights, textures);
     // Globe
     globe = new Globe(gl, camera, backWallLength, otherWallLength, wallThickness, pathGapFromWall, globeDistanceFromPath, lights, textures);
+    walls.addTo(sceneBVH);
+    globe.addTo(sceneBVH);
 
     robot2 = new Robot2(gl, camera, lights, textures);
 
@@ -242,17 +249,23 @@ public class M01_GLEventListener implements GLEventListener {
     
     gl.glClear(GL.GL_COLOR_BUFFER_BIT | GL.GL_DEPTH_BUFFER_BIT);
 
-    robot2.render(gl, getSeconds()-startTime);
-    robot1.render(gl);
+    camera.updateFrustum();
+    camera.getRenderStats().reset();
+    renderQueue.clear(camera);
+    robot2.render(renderQueue, getSeconds()-startTime);
+    robot1.render(renderQueue);
     activateRobots();
 
     lights[0].render(gl);
     lights[0].setPosition(light0Position);
 
     lights[1].render(gl);
-    walls.render(gl);
-
-    globe.render(gl, getSeconds()-startTime);
+    globe.update(getSeconds()-startTime);
+    sceneBVH.draw(renderQueue);
+    renderQueue.flush(gl);
+    if (DISPLAY_RENDER_STATS && ++frameCount % 100 == 0) {
+      System.out.println(renderQueue.getStats()+"; "+camera.getRenderStats());
+    }
 
     gl.glDepthFunc(GL3.GL_LEQUAL);
     gl.glDisable(GL.GL_CULL_FACE);
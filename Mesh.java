@@ -1,71 +1,181 @@
 import gmaths.*;
 import java.nio.*;
-import com.jogamp.common.nio.*;
 import com.jogamp.opengl.*;
 
 public class Mesh {
+
+  public static final int INSTANCE_FLOATS = 16+9;  // per instance: the model matrix, then the normal matrix, column by column
   
+  private static VertexFormat defaultFormat = VertexFormat.PACKED;
+
   private float[] vertices;
   private int[] indices;
-  private int vertexStride = 8;
-  private int vertexXYZFloats = 3;
-  private int vertexNormalFloats = 3;
-  private int vertexTexFloats = 2;
+  private int vertexStride = 8;      // floats per vertex in vertices: x,y,z, nx,ny,nz, s,t
+  private VertexFormat format;       // how the vertex buffer holds them
+  private IndexType indexType;       // how the element buffer holds the indices, the smallest for the vertex count
   private int[] vertexBufferId = new int[1];
   private int[] vertexArrayId = new int[1];
   private int[] elementBufferId = new int[1];
+  private int references = 1;        // MeshCache.get hands out more; dispose gives one back
+  private int instanceBufferId = 0;  // the per-instance buffer the vertex array reads attributes 3 to 9 from
+  private AABB bounds = new AABB();
   
   public Mesh(GL3 gl, float[] vertices, int[] indices) {
+    this(gl, vertices, indices, defaultFormat);
+  }
+
+  /**
+   * @throws IllegalArgumentException if the format cannot hold the vertex positions
+   */
+  public Mesh(GL3 gl, float[] vertices, int[] indices, VertexFormat format) {
+    if (!format.canHold(vertices)) {
+      throw new IllegalArgumentException("Mesh: vertex positions are out of range for "+format);
+    }
     this.vertices = vertices;
     this.indices = indices;
+    this.format = format;
+    indexType = IndexType.forVertices(vertices.length/vertexStride);
+    bounds.include(vertices, 0, vertexStride, vertices.length/vertexStride);
+    if (!bounds.isEmpty()) {
+      float e = format.getPositionError();
+      bounds.min.x -= e; bounds.min.y -= e; bounds.min.z -= e;
+      bounds.max.x += e; bounds.max.y += e; bounds.max.z += e;
+    }
     fillBuffers(gl);
   }
+
+  /**
+   * Sets the format of meshes made without one. PACKED to begin with.
+   */
+  public static void setDefaultFormat(VertexFormat format) {
+    defaultFormat = format;
+  }
+
+  public static VertexFormat getDefaultFormat() {
+    return defaultFormat;
+  }
+
+  /**
+   * Returns the box around the vertex positions, in the mesh's own coordinates. Do not change it.
+   */
+  public AABB getBounds() {
+    return bounds;
+  }
   
   public void render(GL3 gl) {
-    gl.glBindVertexArray(vertexArrayId[0]);
-    gl.glDrawElements(GL.GL_TRIANGLES, indices.length, GL.GL_UNSIGNED_INT, 0);
+    bind(gl);
+    draw(gl);
     gl.glBindVertexArray(0);
   }
 
+  // bind and draw are separate so that a RenderQueue can draw several times with one bind
+  public void bind(GL3 gl) {
+    gl.glBindVertexArray(vertexArrayId[0]);
+  }
+
+  public void draw(GL3 gl) {
+    gl.glDrawElements(GL.GL_TRIANGLES, indices.length, indexType.getGLType(), 0);
+  }
+
+  /**
+   * Draws count instances, reading each instance's model matrix (attributes 3 to 6, one column each) and
+   * normal matrix (attributes 7 to 9) from instanceBuffer, INSTANCE_FLOATS floats per instance.
+   * The vertex array must be bound, and the instance buffer filled.
+   */
+  public void drawInstanced(GL3 gl, int instanceBuffer, int count) {
+    if (instanceBufferId != instanceBuffer) attachInstanceBuffer(gl, instanceBuffer);
+    gl.glDrawElementsInstanced(GL.GL_TRIANGLES, indices.length, indexType.getGLType(), 0, count);
+  }
+
+  private void attachInstanceBuffer(GL3 gl, int instanceBuffer) {
+    gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceBuffer);
+    int stride = INSTANCE_FLOATS*Float.BYTES;
+    for (int i=0; i<4; ++i) {  // model matrix columns
+      gl.glVertexAttribPointer(3+i, 4, GL.GL_FLOAT, false, stride, i*4*Float.BYTES);
+      gl.glVertexAttribDivisor(3+i, 1);
+      gl.glEnableVertexAttribArray(3+i);
+    }
+    for (int i=0; i<3; ++i) {  // normal matrix columns
+      gl.glVertexAttribPointer(7+i, 3, GL.GL_FLOAT, false, stride, (16+i*3)*Float.BYTES);
+      gl.glVertexAttribDivisor(7+i, 1);
+      gl.glEnableVertexAttribArray(7+i);
+    }
+    instanceBufferId = instanceBuffer;
+  }
+
+  // for MeshCache
+  void addReference() {
+    references++;
+  }
+
+  float[] getVertices() {
+    return vertices;
+  }
+
+  int[] getIndices() {
+    return indices;
+  }
+
+  /**
+   * Returns the number of users of the mesh, which MeshCache can share. 0 once it has been deleted.
+   */
+  public int getReferences() {
+    return references;
+  }
+
+  public VertexFormat getFormat() {
+    return format;
+  }
+
+  public IndexType getIndexType() {
+    return indexType;
+  }
+
+  /**
+   * Returns the size of the vertex buffer, in bytes.
+   */
+  public int getVertexBytes() {
+    return vertices.length/vertexStride*format.getStride();
+  }
+
+  /**
+   * Returns the size of the element buffer, in bytes.
+   */
+  public int getIndexBytes() {
+    return indices.length*indexType.getBytes();
+  }
+
+  public int getTriangleCount() {
+    return indices.length/3;
+  }
+
+  public int getVertexArrayId() {
+    return vertexArrayId[0];
+  }
+
   private void fillBuffers(GL3 gl) {
     gl.glGenVertexArrays(1, vertexArrayId, 0);
     gl.glBindVertexArray(vertexArrayId[0]);
     gl.glGenBuffers(1, vertexBufferId, 0);
     gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexBufferId[0]);
-    FloatBuffer fb = Buffers.newDirectFloatBuffer(vertices);
-    
-    gl.glBufferData(GL.GL_ARRAY_BUFFER, Float.BYTES * vertices.length, fb, GL.GL_STATIC_DRAW);
-    
-    int stride = vertexStride;
-    int numXYZFloats = vertexXYZFloats;
-    int offset = 0;
-    gl.glVertexAttribPointer(0, numXYZFloats, GL.GL_FLOAT, false, stride*Float.BYTES, offset);
-    gl.glEnableVertexAttribArray(0);
-  
-    int numNormalFloats = vertexNormalFloats; // x,y,z for each vertex 
-    offset = numXYZFloats*Float.BYTES;  // the normal values are three floats after the three x,y,z values
-                                    // so change the offset value
-    gl.glVertexAttribPointer(1, numNormalFloats, GL.GL_FLOAT, false, stride*Float.BYTES, offset);
-                                    // the vertex shader uses location 1 (sometimes called index 1)
-                                    // for the normal information
-                                    // location, size, type, normalize, stride, offset
-                                    // offset is relative to the start of the array of data
-    gl.glEnableVertexAttribArray(1);// Enable the vertex attribute array at location 1
-
-    // now do the texture coordinates  in vertex attribute 2
-    int numTexFloats = vertexTexFloats;
-    offset = (numXYZFloats+numNormalFloats)*Float.BYTES;
-    gl.glVertexAttribPointer(2, numTexFloats, GL.GL_FLOAT, false, stride*Float.BYTES, offset);
-    gl.glEnableVertexAttribArray(2);
-    
+    ByteBuffer vb = format.pack(vertices);
+    gl.glBufferData(GL.GL_ARRAY_BUFFER, vb.remaining(), vb, GL.GL_STATIC_DRAW);
+    format.setAttributes(gl);
+
     gl.glGenBuffers(1, elementBufferId, 0);
-    IntBuffer ib = Buffers.newDirectIntBuffer(indices);
+    ByteBuffer ib = indexType.pack(indices);
     gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, elementBufferId[0]);
-    gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, Integer.BYTES * indices.length, ib, GL.GL_STATIC_DRAW);
+    gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, ib.remaining(), ib, GL.GL_STATIC_DRAW);
     //gl.glBindVertexArray(0);
   }
   
+  /**
+   * Gives back one reference, and deletes the buffers when it was the last.
+   */
   public void dispose(GL3 gl) {
+    if (references == 0) return;
+    if (--references > 0) return;
+    MeshCache.remove(this);
     gl.glDeleteBuffers(1, vertexBufferId, 0);
     gl.glDeleteVertexArrays(1, vertexArrayId, 0);
     gl.glDeleteBuffers(1, elementBufferId, 0);
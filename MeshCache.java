@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import com.jogamp.opengl.*;
+
+/**
+ * Hands out shared Meshes, so that models with the same geometry use one vertex array and one set of buffers
+ * on the GPU, and one copy of the vertices and indices on the heap. A mesh is found by the arrays it is made from:
+ * first by their identity, e.g. Sphere.vertices and Sphere.indices, and otherwise by their contents.
+ *
+ * Meshes of the same arrays in different VertexFormats are different meshes.
+ *
+ * Each get() is one reference to the mesh, and each Mesh.dispose() gives one back. The buffers are deleted,
+ * and the mesh leaves the cache, when the last reference is given back.
+ */
+public class MeshCache {
+
+  private static HashMap<Key,Mesh> byArrays = new HashMap<Key,Mesh>();
+  private static HashMap<Integer,ArrayList<Mesh>> byContents = new HashMap<Integer,ArrayList<Mesh>>();
+
+  private MeshCache() {
+  }
+
+  /**
+   * Returns a mesh of these vertices and indices, in Mesh's default format, making it the first time.
+   * The arrays are copied, so they can be shared ones such as Sphere.vertices.
+   */
+  public static Mesh get(GL3 gl, float[] vertices, int[] indices) {
+    return get(gl, vertices, indices, Mesh.getDefaultFormat());
+  }
+
+  public static Mesh get(GL3 gl, float[] vertices, int[] indices, VertexFormat format) {
+    Key key = new Key(vertices, indices, format);
+    Mesh mesh = byArrays.get(key);
+    if (mesh == null) {
+      mesh = find(vertices, indices, format);
+      if (mesh == null) {
+        mesh = new Mesh(gl, vertices.clone(), indices.clone(), format);
+        byContents.computeIfAbsent(contentHash(vertices, indices), h -> new ArrayList<Mesh>()).add(mesh);
+        byArrays.put(key, mesh);
+        return mesh;
+      }
+    }
+    mesh.addReference();
+    return mesh;
+  }
+
+  private static Mesh find(float[] vertices, int[] indices, VertexFormat format) {
+    ArrayList<Mesh> meshes = byContents.get(contentHash(vertices, indices));
+    if (meshes == null) return null;
+    for (int i=0; i<meshes.size(); ++i) {
+      Mesh mesh = meshes.get(i);
+      if (mesh.getFormat() == format && Arrays.equals(mesh.getVertices(), vertices) && Arrays.equals(mesh.getIndices(), indices)) return mesh;
+    }
+    return null;
+  }
+
+  private static int contentHash(float[] vertices, int[] indices) {
+    return Arrays.hashCode(vertices)*31 + Arrays.hashCode(indices);
+  }
+
+  // called by Mesh.dispose when the last reference has been given back
+  static void remove(Mesh mesh) {
+    byArrays.values().removeIf(m -> m == mesh);
+    ArrayList<Mesh> meshes = byContents.get(contentHash(mesh.getVertices(), mesh.getIndices()));
+    if (meshes != null) {
+      meshes.remove(mesh);
+      if (meshes.isEmpty()) byContents.remove(contentHash(mesh.getVertices(), mesh.getIndices()));
+    }
+  }
+
+  /**
+   * Returns the number of meshes in the cache.
+   */
+  public static int size() {
+    int n = 0;
+    for (ArrayList<Mesh> meshes : byContents.values()) {
+      n += meshes.size();
+    }
+    return n;
+  }
+
+  // the identity of a pair of arrays, and the format they are held in
+  private static final class Key {
+    private final float[] vertices;
+    private final int[] indices;
+    private final VertexFormat format;
+
+    Key(float[] vertices, int[] indices, VertexFormat format) {
+      this.vertices = vertices;
+      this.indices = indices;
+      this.format = format;
+    }
+
+    public boolean equals(Object o) {
+      return (o instanceof Key) && ((Key)o).vertices == vertices && ((Key)o).indices == indices && ((Key)o).format == format;
+    }
+
+    public int hashCode() {
+      return (System.identityHashCode(vertices)*31 + System.identityHashCode(indices))*31 + format.hashCode();
+    }
+  }
+
+}
@@ -0,0 +1,205 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Optimisations applied to a mesh's vertices and indices before it is uploaded.
+ *
+ * The GPU keeps the results of the vertex shader for recently used vertices in a small cache, so a
+ * vertex shared by triangles drawn close together is shaded once. optimize() orders the triangles so that
+ * they reuse the cache well (Tom Forsyth's "Linear-Speed Vertex Cache Optimisation"), then orders the vertices
+ * by first use, so that they are also fetched from memory in order. Neither changes what is drawn.
+ *
+ * acmr() measures the result: the average number of vertices shaded per triangle. It is 3 with no reuse,
+ * about 0.5 at best for a large grid, and never below the number of vertices over the number of triangles.
+ */
+public class MeshOptimizer {
+
+  public static final int CACHE_SIZE = 32;  // the cache optimize() orders triangles for
+
+  // the scoring of Forsyth's paper
+  private static final float CACHE_DECAY_POWER = 1.5f;
+  private static final float LAST_TRIANGLE_SCORE = 0.75f;
+  private static final float VALENCE_BOOST_SCALE = 2.0f;
+  private static final float VALENCE_BOOST_POWER = 0.5f;
+
+  private MeshOptimizer() {
+  }
+
+  /**
+   * Reorders the triangles of indices for the vertex cache, then the vertices for fetching, in place.
+   * The triangles keep their order if reordering does not lower the ACMR for a cache of CACHE_SIZE, as for a
+   * narrow grid whose rows already fit in the cache.
+   * @param stride The number of floats in vertices for each vertex
+   */
+  public static void optimize(float[] vertices, int[] indices, int stride) {
+    int[] ordered = reorderTriangles(indices, vertices.length/stride);
+    if (acmr(ordered, CACHE_SIZE) < acmr(indices, CACHE_SIZE)) {
+      System.arraycopy(ordered, 0, indices, 0, indices.length);
+    }
+    reorderVertices(vertices, indices, stride);
+  }
+
+  /**
+   * Returns the triangles of indices in the order that makes best use of a vertex cache of CACHE_SIZE.
+   * Each triangle keeps its winding.
+   */
+  public static int[] reorderTriangles(int[] indices, int vertexCount) {
+    int triangles = indices.length/3;
+    // the triangles using each vertex; the first remaining[v] of them are the ones not yet drawn
+    int[] remaining = new int[vertexCount];
+    for (int i=0; i<indices.length; ++i) {
+      remaining[indices[i]]++;
+    }
+    int[] start = new int[vertexCount+1];
+    for (int v=0; v<vertexCount; ++v) {
+      start[v+1] = start[v]+remaining[v];
+    }
+    int[] vertexTriangles = new int[indices.length];
+    int[] filled = new int[vertexCount];
+    for (int i=0; i<indices.length; ++i) {
+      int v = indices[i];
+      vertexTriangles[start[v]+filled[v]++] = i/3;
+    }
+
+    int[] cachePosition = new int[vertexCount];
+    float[] vertexScore = new float[vertexCount];
+    for (int v=0; v<vertexCount; ++v) {
+      cachePosition[v] = -1;
+      vertexScore[v] = score(-1, remaining[v]);
+    }
+    float[] triangleScore = new float[triangles];
+    boolean[] drawn = new boolean[triangles];
+    for (int t=0; t<triangles; ++t) {
+      triangleScore[t] = vertexScore[indices[t*3]] + vertexScore[indices[t*3+1]] + vertexScore[indices[t*3+2]];
+    }
+
+    int[] result = new int[indices.length];
+    int[] cache = new int[CACHE_SIZE+3], next = new int[CACHE_SIZE+3];
+    int cached = 0;
+    int best = -1;
+    for (int n=0; n<triangles; ++n) {
+      if (best < 0) {  // nothing in the cache to carry on from: take the best of the rest
+        float bestScore = -1;
+        for (int t=0; t<triangles; ++t) {
+          if (!drawn[t] && triangleScore[t] > bestScore) {
+            bestScore = triangleScore[t];
+            best = t;
+          }
+        }
+      }
+      drawn[best] = true;
+      System.arraycopy(indices, best*3, result, n*3, 3);
+
+      // the triangle's vertices go to the front of the cache, and the triangle leaves their lists
+      int size = 0;
+      for (int k=0; k<3; ++k) {
+        int v = indices[best*3+k];
+        if (!contains(next, size, v)) next[size++] = v;
+        int end = start[v]+remaining[v]-1;
+        for (int i=start[v]; i<=end; ++i) {
+          if (vertexTriangles[i] == best) {
+            vertexTriangles[i] = vertexTriangles[end];
+            vertexTriangles[end] = best;
+            break;
+          }
+        }
+        remaining[v]--;
+      }
+      int front = size;
+      for (int i=0; i<cached; ++i) {
+        if (!contains(next, front, cache[i])) next[size++] = cache[i];
+      }
+      int[] swap = cache;
+      cache = next;
+      next = swap;
+      cached = Math.min(size, CACHE_SIZE);
+
+      // rescore the vertices that moved, including those that fell out of the cache, and their triangles
+      for (int i=0; i<size; ++i) {
+        int v = cache[i];
+        cachePosition[v] = (i < CACHE_SIZE) ? i : -1;
+        float score = score(cachePosition[v], remaining[v]);
+        float change = score-vertexScore[v];
+        vertexScore[v] = score;
+        for (int j=start[v]; j<start[v]+remaining[v]; ++j) {
+          triangleScore[vertexTriangles[j]] += change;
+        }
+      }
+      best = -1;
+      float bestScore = -1;
+      for (int i=0; i<cached; ++i) {
+        int v = cache[i];
+        for (int j=start[v]; j<start[v]+remaining[v]; ++j) {
+          int t = vertexTriangles[j];
+          if (triangleScore[t] > bestScore) {
+            bestScore = triangleScore[t];
+            best = t;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static boolean contains(int[] a, int n, int v) {
+    for (int i=0; i<n; ++i) {
+      if (a[i] == v) return true;
+    }
+    return false;
+  }
+
+  private static float score(int cachePosition, int remaining) {
+    if (remaining == 0) return -1;  // no triangles left to draw
+    float score = 0;
+    if (cachePosition >= 3) {
+      score = (float)Math.pow(1-(cachePosition-3)/(float)(CACHE_SIZE-3), CACHE_DECAY_POWER);
+    }
+    else if (cachePosition >= 0) {  // used by the last triangle: the same whichever of its three vertices it was
+      score = LAST_TRIANGLE_SCORE;
+    }
+    // boost vertices with few triangles left, so lone triangles are not left behind
+    return score + VALENCE_BOOST_SCALE*(float)Math.pow(remaining, -VALENCE_BOOST_POWER);
+  }
+
+  /**
+   * Reorders the vertices into the order indices first uses them, and renumbers indices to match, in place.
+   * Vertices no triangle uses go at the end.
+   * @param stride The number of floats in vertices for each vertex
+   */
+  public static void reorderVertices(float[] vertices, int[] indices, int stride) {
+    int vertexCount = vertices.length/stride;
+    int[] newIndex = new int[vertexCount];
+    Arrays.fill(newIndex, -1);
+    int count = 0;
+    for (int i=0; i<indices.length; ++i) {
+      int v = indices[i];
+      if (newIndex[v] < 0) newIndex[v] = count++;
+      indices[i] = newIndex[v];
+    }
+    for (int v=0; v<vertexCount; ++v) {
+      if (newIndex[v] < 0) newIndex[v] = count++;
+    }
+    float[] old = vertices.clone();
+    for (int v=0; v<vertexCount; ++v) {
+      System.arraycopy(old, v*stride, vertices, newIndex[v]*stride, stride);
+    }
+  }
+
+  /**
+   * Returns the average cache miss ratio of indices: the vertices shaded per triangle, with a first in,
+   * first out cache of cacheSize vertices.
+   */
+  public static float acmr(int[] indices, int cacheSize) {
+    if (indices.length == 0) return 0;
+    HashMap<Integer,Integer> added = new HashMap<Integer,Integer>();  // vertex -> when it entered the cache
+    int misses = 0;
+    for (int i=0; i<indices.length; ++i) {
+      Integer when = added.get(indices[i]);
+      if (when == null || misses-when >= cacheSize) {
+        added.put(indices[i], ++misses);
+      }
+    }
+    return misses/(float)(indices.length/3);
+  }
+
+}
@@ -8,15 +8,23 @@ import com.jogamp.opengl.util.texture.spi.JPEGImage;
 
 public class ModelMultipleLights {
 
+  private static int models = 0;  // the number made, for the serial numbers
+
+  private final int serial = models++;  // tells models apart in a RenderQueue sort key
+
   private String name;
   private Mesh mesh;
   private Mat4 modelMatrix;
   private Shader shader;
+  private Shader instancedShader;  // draws many copies in one call; null if this model's shader has no such version
   private Material material;
   private Camera camera;
   private Light[] lights;
   private Texture diffuse;
   private Texture specular;
+  private Mat4 mvpMatrix = new Mat4(1);  // reused by render to avoid per-draw allocation
+  private Mat4 normalMatrix = new Mat4(1);
+  private AABB worldBounds = new AABB();
 
   public ModelMultipleLights() {
     name = null;
@@ -71,6 +79,15 @@ public class ModelMultipleLights {
     this.shader = shader;
   }
 
+  /**
+   * Sets the shader a RenderQueue uses to draw several copies of this model with one instanced draw.
+   * It must be the same as the model's shader apart from reading the model and normal matrices from
+   * the per-instance attributes that Mesh.drawInstanced sets up, as assets/shaders/vs_instanced.txt does.
+   */
+  public void setInstancedShader(Shader shader) {
+    this.instancedShader = shader;
+  }
+
   public void setCamera(Camera camera) {
     this.camera = camera;
   }
@@ -101,11 +118,42 @@ public class ModelMultipleLights {
       System.out.println("Error: null in model render");
       return;
     }
+    if (!isVisible(modelMatrix)) {
+      camera.getRenderStats().addCulled();
+      return;
+    }
+    camera.getRenderStats().addDrawn();
+    camera.getRenderStats().addTriangles(mesh.getTriangleCount());
+    useProgram(gl);
+    setModelUniforms(gl, modelMatrix);
+    bindTextures(gl, true, true);
+    // then render the mesh
+    mesh.render(gl);
+  }
+
+  /**
+   * Returns false if the mesh, placed with modelMatrix, is outside the camera's frustum.
+   */
+  public boolean isVisible(Mat4 modelMatrix) {
+    AABB.transform(mesh.getBounds(), modelMatrix, worldBounds);
+    return camera.isVisible(worldBounds);
+  }
 
-    Mat4 mvpMatrix = Mat4.multiply(camera.getPerspectiveMatrix(), Mat4.multiply(camera.getViewMatrix(), modelMatrix));
+  /*
+   * The steps of render, used separately by RenderQueue to skip state that is already set.
+   */
+
+  // uses the shader and sets the uniforms that are the same for every model drawn with it: camera, lights and texture units
+  public void useProgram(GL3 gl) {
+    useProgram(gl, shader);
+  }
+
+  public void useInstancedProgram(GL3 gl) {
+    useProgram(gl, instancedShader);
+  }
+
+  private void useProgram(GL3 gl, Shader shader) {
     shader.use(gl);
-    shader.setFloatArray(gl, "model", modelMatrix.toFloatArrayForGLSL());
-    shader.setFloatArray(gl, "mvpMatrix", mvpMatrix.toFloatArrayForGLSL());
 
     shader.setVec3(gl, "viewPos", camera.getPosition());
 
@@ -133,24 +181,80 @@ public class ModelMultipleLights {
       shader.setFloat(gl, "lights["+i+"].spotLightEnabled", lights[i].getIsSpotlight());
     }
 
+    shader.setInt(gl, "first_texture", 0);  // be careful to match these with GL_TEXTURE0 and GL_TEXTURE1
+    shader.setInt(gl, "second_texture", 1);
+  }
+
+  // sets the uniforms for this model: its matrices and material
+  public void setModelUniforms(GL3 gl, Mat4 modelMatrix) {
+    Mat4.multiplyInto(camera.getViewMatrix(), modelMatrix, mvpMatrix);
+    Mat4.multiplyInto(camera.getPerspectiveMatrix(), mvpMatrix, mvpMatrix);
+    Mat4.normalMatrix(modelMatrix, normalMatrix);
+    shader.setMat4(gl, "model", modelMatrix);
+    shader.setMat4(gl, "mvpMatrix", mvpMatrix);
+    shader.setMat3(gl, "normalMatrix", normalMatrix);
+    setMaterialUniforms(gl, shader);
+  }
+
+  // sets the uniforms for drawing instances of this model with the instanced shader, whose matrices come from the instances
+  public void setInstanceUniforms(GL3 gl) {
+    Mat4.multiplyInto(camera.getPerspectiveMatrix(), camera.getViewMatrix(), mvpMatrix);
+    instancedShader.setMat4(gl, "viewProjection", mvpMatrix);
+    setMaterialUniforms(gl, instancedShader);
+  }
+
+  private void setMaterialUniforms(GL3 gl, Shader shader) {
     shader.setVec3(gl, "material.ambient", material.getAmbient());
     shader.setVec3(gl, "material.diffuse", material.getDiffuse());
     shader.setVec3(gl, "material.specular", material.getSpecular());
     shader.setFloat(gl, "material.shininess", material.getShininess());
+  }
 
-    if (diffuse!=null) {
-      shader.setInt(gl, "first_texture", 0);  // be careful to match these with GL_TEXTURE0 and GL_TEXTURE1
+  public void bindTextures(GL3 gl, boolean bindDiffuse, boolean bindSpecular) {
+    if (diffuse!=null && bindDiffuse) {
       gl.glActiveTexture(GL.GL_TEXTURE0);
       diffuse.bind(gl);
     }
-    if (specular!=null) {
-      shader.setInt(gl, "second_texture", 1);
+    if (specular!=null && bindSpecular) {
       gl.glActiveTexture(GL.GL_TEXTURE1);
       specular.bind(gl);
     }
+  }
 
-    // then render the mesh
-    mesh.render(gl);
+  public Mat4 getModelMatrix() {
+    return modelMatrix;
+  }
+
+  public Mesh getMesh() {
+    return mesh;
+  }
+
+  public Shader getShader() {
+    return shader;
+  }
+
+  public int getSerial() {
+    return serial;
+  }
+
+  public Shader getInstancedShader() {
+    return instancedShader;
+  }
+
+  public Camera getCamera() {
+    return camera;
+  }
+
+  public Light[] getLights() {
+    return lights;
+  }
+
+  public Texture getDiffuse() {
+    return diffuse;
+  }
+
+  public Texture getSpecular() {
+    return specular;
   }
 
   private boolean mesh_null() {
@@ -1,9 +1,11 @@
+import gmaths.*;
 import com.jogamp.opengl.*;
 
 public class ModelNode extends SGNode {
   
   //Slight modification by changing it from Model class to ModelMultipleLights
   protected ModelMultipleLights model;
+  protected AABB modelBounds = new AABB();  // world-space box of this node's own model
 
   public ModelNode(String name, ModelMultipleLights m) {
     super(name);
@@ -17,4 +19,44 @@ public class ModelNode extends SGNode {
     }
   }
 
+  public ModelMultipleLights getModel() {
+    return model;
+  }
+
+  protected void updateBounds() {
+    super.updateBounds();
+    if (model == null) return;  // a placeholder from SceneFile.buildGraph
+    AABB.transform(model.getMesh().getBounds(), worldTransform, modelBounds);
+    bounds.include(modelBounds);
+    modelCount++;
+  }
+
+  protected void draw(RenderQueue queue, Frustum frustum) {
+    if (frustum != null) {
+      int c = classify(frustum);
+      if (c == Frustum.OUTSIDE) {
+        queue.addCulled(modelCount);
+        return;
+      }
+      if (c == Frustum.INSIDE) frustum = null;
+    }
+    if (frustum == null || frustum.intersects(modelBounds)) {
+      queue.addVisible(model, worldTransform);
+    }
+    else {
+      queue.addCulled(1);
+    }
+    drawChildren(queue, frustum);
+  }
+
+  protected float pick(Vec3 origin, Vec3 direction, float nearest, ModelNode[] hit) {
+    if (bounds.isEmpty() || bounds.intersectRay(origin, direction) >= nearest) return nearest;
+    float t = modelBounds.intersectRay(origin, direction);
+    if (t < nearest) {
+      nearest = t;
+      hit[0] = this;
+    }
+    return pickChildren(origin, direction, nearest, hit);
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,353 @@
+import gmaths.*;
+import java.nio.*;
+import com.jogamp.common.nio.*;
+import com.jogamp.opengl.*;
+import com.jogamp.opengl.util.texture.*;
+
+/**
+ * Collects the models to be drawn in a frame, then draws them sorted by render state so that
+ * consecutive draws can share the shader program, textures and vertex array instead of binding
+ * them again.
+ *
+ * Each item is given a 64-bit sort key. From the most significant bits down:
+ *   program (12 bits) | diffuse texture (12) | specular texture (12) | mesh vertex array (12) | depth (16)
+ * The ids are the OpenGL object names, which are small integers, and depth is the distance from the eye,
+ * so within the same state models are drawn front to back. The key only decides the order; binds are
+ * skipped by comparing the actual object names, so two objects sharing 12 bits cannot be confused.
+ *
+ * With instancing on, a model that has an instanced shader (ModelMultipleLights.setInstancedShader) gets its
+ * serial number in place of the depth, so every copy of it is next to the others after sorting. A run of two or
+ * more copies is drawn with one instanced draw, with their matrices in an instance buffer, so many robots built
+ * from one SceneFile cost a draw per part rather than a draw per part per robot.
+ *
+ * Use: clear() at the start of the frame, add() each model (SGNode.draw(RenderQueue) does this for
+ * a scene graph), then flush(). The world matrix is copied when the item is added. If the queue was
+ * cleared with a camera, models outside the camera's frustum are dropped there, before sorting.
+ */
+public class RenderQueue {
+
+  private static final int ID_BITS = 12;
+  private static final int DEPTH_BITS = 16;
+  private static final long ID_MASK = (1L<<ID_BITS)-1;
+  private static final long DEPTH_MASK = (1L<<DEPTH_BITS)-1;
+  private static final float MAX_DEPTH = 100;   // the far clip plane of Mat4Transform.perspective
+
+  private ModelMultipleLights[] models = new ModelMultipleLights[64];
+  private float[] worlds = new float[64*16];
+  private long[] keys = new long[64];
+  private int[] order = new int[64];
+  private int[] temp = new int[64];
+  private int count = 0;
+
+  private boolean sorting = true;
+  private boolean instancing = true;
+  private int[] instanceBuffer = new int[1];  // made by the first instanced draw
+  private FloatBuffer instances = Buffers.newDirectFloatBuffer(64*Mesh.INSTANCE_FLOATS);
+  private Mat4 normal = new Mat4(1);
+  private Vec3 eye = new Vec3();
+  private Camera camera = null;
+  private AABB box = new AABB();
+  private Mat4 world = new Mat4(1);
+
+  // bind counts of the last flush: [0] in the order added, [1] in the order drawn
+  private int[] programBinds = new int[2];
+  private int[] textureBinds = new int[2];
+  private int[] meshBinds = new int[2];
+  private int lastCount = 0;
+  private int drawCalls = 0;
+
+  /**
+   * Empties the queue for a new frame.
+   * @param eyePosition The camera position, used for the depth part of the sort key
+   */
+  public void clear(Vec3 eyePosition) {
+    for (int i=0; i<count; ++i) {
+      models[i] = null;
+    }
+    count = 0;
+    eye.x = eyePosition.x;
+    eye.y = eyePosition.y;
+    eye.z = eyePosition.z;
+    camera = null;
+  }
+
+  /**
+   * Empties the queue for a new frame drawn with camera, whose frustum is then used by
+   * SGNode.draw(RenderQueue) and DynamicBVH.draw(RenderQueue) to cull whole subtrees.
+   */
+  public void clear(Camera camera) {
+    clear(camera.getPosition());
+    this.camera = camera;
+  }
+
+  /**
+   * Returns the frustum to cull against, or null if the queue has no camera or culling is off.
+   */
+  public Frustum getFrustum() {
+    return (camera != null && camera.isCulling()) ? camera.getFrustum() : null;
+  }
+
+  /**
+   * Records n models as culled without adding them, for a subtree rejected by a single test.
+   */
+  public void addCulled(int n) {
+    if (camera != null) camera.getRenderStats().addCulled(n);
+  }
+
+  /**
+   * Turns sorting on or off. Off draws the items in the order added, still skipping repeated binds.
+   */
+  public void setSorting(boolean b) {
+    sorting = b;
+  }
+
+  public boolean isSorting() {
+    return sorting;
+  }
+
+  /**
+   * Turns instanced drawing of repeated models on or off. Takes effect for models added afterwards.
+   */
+  public void setInstancing(boolean b) {
+    instancing = b;
+  }
+
+  public boolean isInstancing() {
+    return instancing;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Adds a model drawn with its own model matrix.
+   */
+  public void add(ModelMultipleLights model) {
+    add(model, model.getModelMatrix());
+  }
+
+  /**
+   * Adds a model drawn with the world matrix m, which is copied.
+   * If the queue was cleared with a camera, a model outside its frustum is counted as culled and not added.
+   */
+  public void add(ModelMultipleLights model, Mat4 m) {
+    Frustum frustum = getFrustum();
+    if (frustum != null) {
+      AABB.transform(model.getMesh().getBounds(), m, box);
+      if (!frustum.intersects(box)) {
+        addCulled(1);
+        return;
+      }
+    }
+    addVisible(model, m);
+  }
+
+  /**
+   * Adds a model already known to be inside the frustum, without testing it again.
+   */
+  public void addVisible(ModelMultipleLights model, Mat4 m) {
+    if (count == models.length) grow();
+    models[count] = model;
+    m.storeRowMajor(worlds, count*16);
+    float dx = m.get(0,3)-eye.x, dy = m.get(1,3)-eye.y, dz = m.get(2,3)-eye.z;
+    float depth = (float)Math.sqrt(dx*dx + dy*dy + dz*dz)/MAX_DEPTH;
+    long d = (instancing && model.getInstancedShader() != null) ? model.getSerial() & DEPTH_MASK
+                                                                : (long)(Math.min(1, depth)*DEPTH_MASK);
+    keys[count] = (programId(model) & ID_MASK) << (64-ID_BITS)
+                | (textureId(model.getDiffuse()) & ID_MASK) << (64-2*ID_BITS)
+                | (textureId(model.getSpecular()) & ID_MASK) << (64-3*ID_BITS)
+                | (meshId(model) & ID_MASK) << DEPTH_BITS
+                | d;
+    count++;
+  }
+
+  private void grow() {
+    int n = models.length*2;
+    ModelMultipleLights[] m = new ModelMultipleLights[n];
+    System.arraycopy(models, 0, m, 0, count);
+    models = m;
+    float[] w = new float[n*16];
+    System.arraycopy(worlds, 0, w, 0, count*16);
+    worlds = w;
+    long[] k = new long[n];
+    System.arraycopy(keys, 0, k, 0, count);
+    keys = k;
+    order = new int[n];
+    temp = new int[n];
+  }
+
+  private static int programId(ModelMultipleLights m) {
+    return m.getShader().getID();
+  }
+
+  private static int meshId(ModelMultipleLights m) {
+    return m.getMesh().getVertexArrayId();
+  }
+
+  private static int textureId(Texture t) {
+    return (t == null) ? 0 : t.getTextureObject();
+  }
+
+  /**
+   * Draws everything in the queue, sorted unless sorting has been turned off, and records the bind counts.
+   */
+  public void flush(GL3 gl) {
+    for (int i=0; i<count; ++i) {
+      order[i] = i;
+    }
+    countBinds(0);
+    if (sorting) sort();
+    countBinds(1);
+    lastCount = count;
+    drawCalls = 0;
+
+    int program = -1, vertexArray = -1, diffuse = 0, specular = 0;
+    Light[] lights = null;
+    Camera camera = null;
+    for (int k=0; k<count; ) {
+      int i = order[k];
+      ModelMultipleLights model = models[i];
+      int n = copies(k);
+      Shader shader = (n > 1) ? model.getInstancedShader() : model.getShader();
+      if (shader.getID() != program || model.getLights() != lights || model.getCamera() != camera) {
+        if (n > 1) model.useInstancedProgram(gl);
+        else model.useProgram(gl);
+        program = shader.getID();
+        lights = model.getLights();
+        camera = model.getCamera();
+      }
+      if (n > 1) {
+        model.setInstanceUniforms(gl);
+        fillInstances(gl, k, n);
+      }
+      else {
+        world.loadRowMajor(worlds, i*16);
+        model.setModelUniforms(gl, world);
+      }
+      int d = textureId(model.getDiffuse()), s = textureId(model.getSpecular());
+      model.bindTextures(gl, d != diffuse, s != specular);
+      if (d != 0) diffuse = d;
+      if (s != 0) specular = s;
+      if (meshId(model) != vertexArray) {
+        model.getMesh().bind(gl);
+        vertexArray = meshId(model);
+      }
+      if (n > 1) model.getMesh().drawInstanced(gl, instanceBuffer[0], n);
+      else model.getMesh().draw(gl);
+      if (camera != null) {
+        camera.getRenderStats().addDrawn(n);
+        camera.getRenderStats().addTriangles(n*model.getMesh().getTriangleCount());
+      }
+      drawCalls++;
+      k += n;
+    }
+    gl.glBindVertexArray(0);
+  }
+
+  // the number of copies of the model at order[k] from k on that can be drawn together, 1 if it is not instanced
+  private int copies(int k) {
+    ModelMultipleLights model = models[order[k]];
+    if (!instancing || model.getInstancedShader() == null) return 1;
+    int n = 1;
+    while (k+n < count && models[order[k+n]] == model) {
+      n++;
+    }
+    return n;
+  }
+
+  // puts the model and normal matrices of order[k..k+n) into the instance buffer
+  private void fillInstances(GL3 gl, int k, int n) {
+    if (instanceBuffer[0] == 0) gl.glGenBuffers(1, instanceBuffer, 0);
+    if (instances.capacity() < n*Mesh.INSTANCE_FLOATS) {
+      instances = Buffers.newDirectFloatBuffer(Integer.highestOneBit(n)*2*Mesh.INSTANCE_FLOATS);
+    }
+    instances.clear();
+    for (int j=0; j<n; ++j) {
+      int w = order[k+j]*16;
+      for (int c=0; c<4; ++c) {
+        for (int r=0; r<4; ++r) {
+          instances.put(worlds[w+r*4+c]);
+        }
+      }
+      world.loadRowMajor(worlds, w);
+      Mat4.normalMatrix(world, normal);
+      for (int c=0; c<3; ++c) {
+        for (int r=0; r<3; ++r) {
+          instances.put(normal.get(r,c));
+        }
+      }
+    }
+    instances.flip();
+    gl.glBindBuffer(GL.GL_ARRAY_BUFFER, instanceBuffer[0]);
+    gl.glBufferData(GL.GL_ARRAY_BUFFER, (long)instances.limit()*Float.BYTES, instances, GL3.GL_STREAM_DRAW);
+  }
+
+  /**
+   * Deletes the instance buffer.
+   */
+  public void dispose(GL3 gl) {
+    if (instanceBuffer[0] != 0) gl.glDeleteBuffers(1, instanceBuffer, 0);
+    instanceBuffer[0] = 0;
+  }
+
+  // counts the binds that drawing in the current order needs, into slot i of the counts
+  private void countBinds(int slot) {
+    int programs = 0, textures = 0, meshes = 0;
+    int program = -1, vertexArray = -1, diffuse = 0, specular = 0;
+    for (int k=0; k<count; ++k) {
+      ModelMultipleLights model = models[order[k]];
+      if (programId(model) != program) {
+        program = programId(model);
+        programs++;
+      }
+      int d = textureId(model.getDiffuse()), s = textureId(model.getSpecular());
+      if (d != 0 && d != diffuse) {
+        diffuse = d;
+        textures++;
+      }
+      if (s != 0 && s != specular) {
+        specular = s;
+        textures++;
+      }
+      if (meshId(model) != vertexArray) {
+        vertexArray = meshId(model);
+        meshes++;
+      }
+    }
+    programBinds[slot] = programs;
+    textureBinds[slot] = textures;
+    meshBinds[slot] = meshes;
+  }
+
+  // stable bottom-up merge sort of order[0..count) by unsigned key
+  private void sort() {
+    int[] src = order, dst = temp;
+    for (int width=1; width<count; width*=2) {
+      for (int lo=0; lo<count; lo+=2*width) {
+        int mid = Math.min(lo+width, count), hi = Math.min(lo+2*width, count);
+        int a = lo, b = mid, o = lo;
+        while (a < mid && b < hi) {
+          dst[o++] = (Long.compareUnsigned(keys[src[b]], keys[src[a]]) < 0) ? src[b++] : src[a++];
+        }
+        while (a < mid) dst[o++] = src[a++];
+        while (b < hi) dst[o++] = src[b++];
+      }
+      int[] t = src; src = dst; dst = t;
+    }
+    if (src != order) {
+      System.arraycopy(src, 0, order, 0, count);
+    }
+  }
+
+  /**
+   * Returns the bind counts of the last flush, in the order added and in the order drawn.
+   */
+  public String getStats() {
+    return "models "+lastCount+", draws "+drawCalls
+      +", program binds "+programBinds[0]+" -> "+programBinds[1]
+      +", texture binds "+textureBinds[0]+" -> "+textureBinds[1]
+      +", mesh binds "+meshBinds[0]+" -> "+meshBinds[1];
+  }
+
+}
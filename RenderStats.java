@@ -0,0 +1,54 @@
+/**
+ * Counts what was drawn, the triangles in it, and what was culled in a frame.
+ * A Camera owns one, since every model already has the camera it is drawn with.
+ * reset() is called at the start of each frame.
+ */
+public class RenderStats {
+
+  private int drawn = 0;
+  private int culled = 0;
+  private int triangles = 0;
+
+  public void reset() {
+    drawn = 0;
+    culled = 0;
+    triangles = 0;
+  }
+
+  public void addDrawn() {
+    drawn++;
+  }
+
+  public void addDrawn(int n) {
+    drawn += n;
+  }
+
+  public void addTriangles(int n) {
+    triangles += n;
+  }
+
+  public void addCulled() {
+    culled++;
+  }
+
+  public void addCulled(int n) {
+    culled += n;
+  }
+
+  public int getDrawn() {
+    return drawn;
+  }
+
+  public int getTriangles() {
+    return triangles;
+  }
+
+  public int getCulled() {
+    return culled;
+  }
+
+  public String toString() {
+    return "drawn "+drawn+" ("+triangles+" triangles), culled "+culled;
+  }
+
+}
@@ -18,9 +18,11 @@ import com.jogamp.opengl.util.texture.spi.JPEGImage;
 public class Robot1 {
     private Camera camera;
     private Light[] light;
-    private ModelMultipleLights sphere;
-    private NameNode robotRoot;
-    private TransformNode robotTranslate, robotRotate, upperLegRotate, bodyRotate, leftArmRotate, rightArmRotate, headRotate, rightEyeScale, leftEyeScale, leftEarRotate, rightEarRotate;
+    private SceneFile scene;  // shared by every robot of this kind, which share its models
+    private SGNode robotRoot;
+    private SceneIndex index;
+    // the joints moved by the animation, found by name in the index
+    private SceneIndex.Handle<TransformNode> robotRotate, upperLegRotate, bodyRotate, leftArmRotate, rightArmRotate, headRotate, rightEyeScale, leftEyeScale, leftEarRotate, rightEarRotate;
 
     private double startTime = 0;
     private double pauseDuration = 0;
@@ -29,13 +31,18 @@ public class Robot1 {
 
     private float[] armAngles = {20,-20};
     private Vec3 posVec3 = new Vec3(-2.75f,.1f,-4);
+
+    // Scratch values reused by the animation so that it does not allocate every frame
+    private Quat rotation = new Quat();
+    private Quat axisRotation = new Quat();
+    private Mat4 scratch = new Mat4(1);
     
     public void dispose(GL3 gl) {
-        sphere.dispose(gl);
+        scene.release(gl, robotRoot);
     }
 
     /**
-     * Constructor, initialises the Robot.
+     * Constructor, initialises the Robot. The scene graph is loaded from assets/scenes/robot1.json.
      * @param gl GL3 package for OpenGL.
      * @param cameraIn Camera class for constructing ModelMultipleLights.
      * @param lightIn lights class for constructing ModelMultipleLights.
@@ -45,168 +52,23 @@ public class Robot1 {
         this.camera = cameraIn;
         this.light = lightIn;
         this.startTime = getSeconds();
-        
-        
-        // cube = makeCube(gl);
-
-        // base, bottomLeg, upperLeg, mainBody, leftArm, rightArm, head, leftEye, rightEye, rightEar, leftEar;
-
-        float legHeight = 1.25f, legWidth = .25f, legLength = .25f;
-        float baseheight = .3f;
-        float bodyHeight = 3f, bodyWidth = .5f, bodyLength = .5f;
-        float armWidth = .3f, armHeight = 1.5f, armLength = .3f;
-        float headWidth = 1f, headHeight = .75f, headLength = .4f;
-
-        Texture[] bodyTextures = {textures.get("robot1"), textures.get("pure_spec")};
-        Texture[] eyeTextures = {textures.get("robot_eyes")};
-        
-
-        NameNode base = makePart(gl, "base", new Vec3(3,baseheight,3), bodyTextures);
-        NameNode bottomLeg = makePart(gl, "bottom leg", new Vec3(legWidth, legHeight, legLength), bodyTextures);
-        NameNode upperLeg = makePart(gl, "upper leg", new Vec3(legWidth, legHeight, legLength), bodyTextures);
-        NameNode body = makePart(gl, "body", new Vec3(bodyWidth, bodyHeight, bodyLength), bodyTextures);
-        NameNode leftArm = makePart(gl, "left arm", new Vec3(armWidth, armHeight, armLength), bodyTextures);
-        NameNode rightArm = makePart(gl, "left arm", new Vec3(armWidth, armHeight, armLength), bodyTextures);
-        NameNode head = makePart(gl, "head", new Vec3(headWidth, headHeight, headLength), bodyTextures);
-        NameNode leftEye = makePart(gl, "eye", new Vec3(headWidth, headHeight, headLength), eyeTextures);
-        NameNode rightEye = makePart(gl, "eye", new Vec3(headWidth, headHeight, headLength), eyeTextures);
-        NameNode leftEar = makePart(gl, "eye", new Vec3(.2f, headHeight, .1f), eyeTextures);
-        NameNode rightEar = makePart(gl, "eye", new Vec3(.2f, headHeight, .1f), eyeTextures);
-
-
-        robotRoot = new NameNode("robotStack");
-
-        robotTranslate = new TransformNode("robot transform", Mat4Transform.translate(posVec3));
-
-        TransformNode bottomLegPivot = new TransformNode("bottom leg pivot", Mat4Transform.translate(0,baseheight-.15f,0));
-        robotRotate = new TransformNode("robot rotate x", Mat4Transform.rotateAroundX(0));
-        TransformNode bottomLegTranslate = new TransformNode("lower leg translate", Mat4Transform.translate(0, (legHeight/2), 0));
-
-        TransformNode upperLegPivot = new TransformNode("upper leg pivot", Mat4Transform.translate(0,baseheight+.25f,0));
-        upperLegRotate = new TransformNode("lower leg rx", Mat4Transform.rotateAroundX(0));
-        TransformNode upperLegTranslate = new TransformNode("upper leg translate", Mat4Transform.translate(0, (legHeight/2),0));
-
-        TransformNode bodyPivot = new TransformNode("body pivot", Mat4Transform.translate(0, baseheight+.2f, 0));
-        bodyRotate = new TransformNode("rotation", Mat4Transform.rotateAroundX(0));
-        TransformNode bodyTranslate = new TransformNode("body translate", Mat4Transform.translate(0,(bodyHeight/2),0));
-
-        TransformNode leftarmPivot = new TransformNode("arm pivot", Mat4Transform.translate(bodyWidth/2-.05f, (bodyHeight / 2) - (armHeight /2), 0));
-        TransformNode leftArmTranslate = new TransformNode("left arm translate", Mat4Transform.translate(0,-(armHeight/2),0));
-        leftArmRotate = new TransformNode("left arm rotate", Mat4Transform.rotateAroundZ(armAngles[0]));
-    
-        TransformNode rightarmPivot = new TransformNode("arm pivot", Mat4Transform.translate(-bodyWidth/2+.05f, (bodyHeight / 2) - (armHeight /2), 0));
-        TransformNode rightArmTranslate = new TransformNode("right arm translate", Mat4Transform.translate(0,-(armHeight/2),0));
-        rightArmRotate = new TransformNode("right arm rotate", Mat4Transform.rotateAroundZ(armAngles[1]));
-
-        TransformNode headPivot = new TransformNode("head pivot", Mat4Transform.translate(0,(bodyHeight/2)+(headHeight/2)-.4f,0));
-        headRotate = new TransformNode("head rotate", Mat4Transform.rotateAroundY(0));
-        TransformNode headTranslate = new TransformNode("head translate", Mat4Transform.translate(0, headHeight/2, 0));
-
-        leftEyeScale = new TransformNode("left eye scale", Mat4Transform.scale(0.225f, 0.3f, 0.2f));
-        TransformNode leftEyeTranslate = new TransformNode("left eye translate", Mat4Transform.translate(-.135f, 0, (headLength/2)-.005f));
-
-        rightEyeScale = new TransformNode("right eye scale", Mat4Transform.scale(0.225f, 0.3f, 0.2f));
-        TransformNode rightEyeTranslate = new TransformNode("left eye translate", Mat4Transform.translate(.135f, 0, (headLength/2)-.005f));
-
-        TransformNode leftEarPivot = new TransformNode("left ear pivot",  Mat4Transform.translate(-0.2f,(0.5f/2)+(headHeight/2)-.2f,0));
-        leftEarRotate = new TransformNode("left ear rotate", Mat4Transform.rotateAroundZ(35));
-        TransformNode leftEarTranslate = new TransformNode("left ear translate", Mat4Transform.translate(0, (0.5f/2),0));
-
-        TransformNode rightEarPivot = new TransformNode("right ear pivot",  Mat4Transform.translate(0.2f,(0.5f/2)+(headHeight/2)-.2f,0));
-        rightEarRotate = new TransformNode("right ear rotate", Mat4Transform.rotateAroundZ(-35));
-        TransformNode rightEarTranslate = new TransformNode("right ear translate", Mat4Transform.translate(0, (0.5f/2),0));
-
-        robotRoot.addChild(robotTranslate);
-            robotTranslate.addChild(base);
-                base.addChild(bottomLegPivot);
-                    bottomLegPivot.addChild(robotRotate);
-                        robotRotate.addChild(bottomLegTranslate);
-                            bottomLegTranslate.addChild(bottomLeg);
-                                bottomLeg.addChild(upperLegPivot);
-                                    upperLegPivot.addChild(upperLegRotate);
-                                        upperLegRotate.addChild(upperLegTranslate);
-                                            upperLegTranslate.addChild(upperLeg);
-                                                upperLeg.addChild(bodyPivot);
-                                                    bodyPivot.addChild(bodyRotate);
-                                                        bodyRotate.addChild(bodyTranslate);
-                                                            bodyTranslate.addChild(body);
-                                                                body.addChild(leftarmPivot);
-                                                                    leftarmPivot.addChild(leftArmRotate);
-                                                                        leftArmRotate.addChild(leftArmTranslate);
-                                                                            leftArmTranslate.addChild(leftArm);
-                                                                body.addChild(rightarmPivot);
-                                                                    rightarmPivot.addChild(rightArmRotate);
-                                                                        rightArmRotate.addChild(rightArmTranslate);
-                                                                            rightArmTranslate.addChild(rightArm);
-                                                                body.addChild(headPivot);
-                                                                    headPivot.addChild(headRotate);
-                                                                        headRotate.addChild(headTranslate);
-                                                                            headTranslate.addChild(head);
-                                                                                head.addChild(leftEyeTranslate);
-                                                                                    leftEyeTranslate.addChild(leftEyeScale);
-                                                                                        leftEyeScale.addChild(leftEye);
-                                                                                head.addChild(rightEyeTranslate);
-                                                                                    rightEyeTranslate.addChild(rightEyeScale);
-                                                                                        rightEyeScale.addChild(rightEye);
-                                                                                head.addChild(leftEarPivot);
-                                                                                    leftEarPivot.addChild(leftEarRotate);
-                                                                                        leftEarRotate.addChild(leftEarTranslate);
-                                                                                            leftEarTranslate.addChild(leftEar);
-                                                                                head.addChild(rightEarPivot);
-                                                                                    rightEarPivot.addChild(rightEarRotate);
-                                                                                        rightEarRotate.addChild(rightEarTranslate);
-                                                                                            rightEarTranslate.addChild(rightEar);
-
-
-
-
-
-        robotRoot.update();
-            
 
-    }
-
-    /**
-     * Method, modified version of makePart from Robot in 7_3_robot.
-     * Creates a Name, Transform and ModelNode of the robot.
-     * @param gl GL3 package for OpenGL
-     * @param name String name for the nodes.
-     * @param size Vector3 size for scaling.
-     * @param textures Textures for ModelMultipleLights construction in makeSphere()
-     * @return NameNode that has a TransformNode and ModelNode
-     */
-    private NameNode makePart(GL3 gl, String name, Vec3 size, Texture[] textures) {
-        sphere = makeSphere(gl, textures);
-        NameNode part = new NameNode(name);
-        Mat4 m = Mat4Transform.scale(size);
-        TransformNode partTransform = new TransformNode(name + " transform", m);
-        ModelNode bodyShape = new ModelNode("object("+name+")", sphere);
-        part.addChild(partTransform);
-        partTransform.addChild(bodyShape);
-        return part;
-    }
-
-    /**
-     * Method, creates a sphere using ModelMultipleLights for makePart
-     * @param gl GL3 package for OpenGL
-     * @param textures Texture class for ModelMultipleLights
-     * @return a ModelMultipleLights object
-     */
-    private ModelMultipleLights makeSphere(GL3 gl, Texture[] textures) {
-        String name = "sphere";
-        Mesh mesh = new Mesh(gl, Sphere.vertices.clone(), Sphere.indices.clone());
-        Shader shader;
-        Material material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
-        if (textures.length == 2) {
-            shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
-            return new ModelMultipleLights(name, mesh, new Mat4(1), shader, material, light, camera, textures[0], textures[1]);
-        } else if (textures.length > 0) {
-            shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_1t.txt");
-            return new ModelMultipleLights(name, mesh, new Mat4(1), shader, material, light, camera, textures[0]);
-        }
-        shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_0t.txt");
-        return new ModelMultipleLights(name, mesh, new Mat4(1), shader, material, light, camera);
-        
+        scene = SceneFile.get("assets/scenes/robot1.json");
+        robotRoot = scene.build(gl, camera, light, textures);
+        // the nodes the animation changes are marked "dynamic" in the file, so they are kept
+        SceneOptimizer.foldStaticTransforms(robotRoot);
+
+        index = new SceneIndex(robotRoot);
+        this.robotRotate = index.transform("robot rotate x");
+        this.upperLegRotate = index.transform("lower leg rx");
+        this.bodyRotate = index.transform("rotation");
+        this.leftArmRotate = index.transform("left arm rotate");
+        this.rightArmRotate = index.transform("right arm rotate");
+        this.headRotate = index.transform("head rotate");
+        this.leftEyeScale = index.transform("left eye scale");
+        this.rightEyeScale = index.transform("right eye scale");
+        this.leftEarRotate = index.transform("left ear rotate");
+        this.rightEarRotate = index.transform("right ear rotate");
     }
 
     private double getSeconds() {
@@ -222,44 +84,67 @@ public class Robot1 {
         
         float speed = 3;
         float amplifier = 15;
-        float lowCalculation = (float)Math.sin(time*speed/2)*amplifier;
-        float variation = (float)Math.sin(time)*5;
+        float sinSpeed = Trig.sin(time*speed);
+        float sinHalfSpeed = Trig.sin(time*speed/2);
+        float sinTime = Trig.sin(time);
+        float lowCalculation = sinHalfSpeed*amplifier;
+        float variation = sinTime*5;
         
-        float robotZRotation = (float)(Math.sin(time*speed))*35;
-        float robotYRotation = (float)((Math.sin(time*speed))*35)+variation;
+        float robotZRotation = sinSpeed*35;
+        float robotYRotation = sinSpeed*35+variation;
         float robotXRotation = (float)(-lowCalculation);
 
-        float upperZRotation = -(robotZRotation)+(float)(Math.sin(time*speed/2)*amplifier*4)+variation;
+        float upperZRotation = -(robotZRotation)+sinHalfSpeed*amplifier*4+variation;
         float upperYRotation = -(robotYRotation);
         float upperXRotation = -(robotXRotation);
 
-        Mat4 legCalculation = Mat4.multiply(Mat4Transform.rotateAroundY(upperYRotation), Mat4Transform.rotateAroundZ(upperZRotation));
-        legCalculation = Mat4.multiply(legCalculation, Mat4Transform.rotateAroundX(upperXRotation));
-
-        Mat4 robotRotation = Mat4.multiply(Mat4Transform.rotateAroundZ(robotZRotation), Mat4Transform.rotateAroundY(robotYRotation));
-        robotRotation = Mat4.multiply(robotRotation, Mat4Transform.rotateAroundX(robotXRotation));
-        robotRotate.setTransform(robotRotation);
-        upperLegRotate.setTransform(Mat4.multiply(legCalculation, Mat4Transform.rotateAroundY(upperYRotation)));
+        rotation.setAroundZ(robotZRotation);
+        axisRotation.setAroundY(robotYRotation);
+        rotation.mulLocal(axisRotation);
+        axisRotation.setAroundX(robotXRotation);
+        rotation.mulLocal(axisRotation);
+        robotRotate.get().setRotation(rotation);
+
+        rotation.setAroundY(upperYRotation);
+        axisRotation.setAroundZ(upperZRotation);
+        rotation.mulLocal(axisRotation);
+        axisRotation.setAroundX(upperXRotation);
+        rotation.mulLocal(axisRotation);
+        axisRotation.setAroundY(upperYRotation);
+        rotation.mulLocal(axisRotation);
+        upperLegRotate.get().setRotation(rotation);
 
         
         float bodyCounterRotationZ = -(upperZRotation);
         float bodyCounterRotationY = -(upperYRotation);
         float bodyCounterRotationX = -(upperXRotation);
 
-        Mat4 bodyCounterRotation = Mat4.multiply(Mat4Transform.rotateAroundZ(bodyCounterRotationZ), Mat4Transform.rotateAroundY(bodyCounterRotationY));
-        bodyRotate.setTransform(Mat4.multiply(bodyCounterRotation, Mat4Transform.rotateAroundX(bodyCounterRotationX-lowCalculation-variation))); //-lowCalculation-variation
-        headRotate.setTransform(Mat4.multiply(Mat4Transform.rotateAroundY((float)(Math.sin(time*speed)*amplifier*3)), Mat4Transform.rotateAroundX((float)(Math.sin(time)*amplifier*3))));
+        rotation.setAroundZ(bodyCounterRotationZ);
+        axisRotation.setAroundY(bodyCounterRotationY);
+        rotation.mulLocal(axisRotation);
+        axisRotation.setAroundX(bodyCounterRotationX-lowCalculation-variation); //-lowCalculation-variation
+        rotation.mulLocal(axisRotation);
+        bodyRotate.get().setRotation(rotation);
+
+        rotation.setAroundY(sinSpeed*amplifier*3);
+        axisRotation.setAroundX(sinTime*amplifier*3);
+        rotation.mulLocal(axisRotation);
+        headRotate.get().setRotation(rotation);
 
-        float earRotation = (float)Math.max(0, Math.min((Math.sin(time*1.5)*amplifier*6),65));
+        float earRotation = Math.max(0, Math.min(Trig.sin(time*1.5)*amplifier*6, 65));
 
-        leftEarRotate.setTransform(Mat4Transform.rotateAroundZ(earRotation));
-        rightEarRotate.setTransform(Mat4Transform.rotateAroundZ(-earRotation));
+        rotation.setAroundZ(earRotation);
+        leftEarRotate.get().setRotation(rotation);
+        rotation.setAroundZ(-earRotation);
+        rightEarRotate.get().setRotation(rotation);
         
 
-        float armAngle = (float)(Math.sin(time*speed)+1)/2 *(150-20)+20;
+        float armAngle = (sinSpeed+1)/2 *(150-20)+20;
 
-        leftArmRotate.setTransform(Mat4Transform.rotateAroundZ(armAngle));
-        rightArmRotate.setTransform(Mat4Transform.rotateAroundZ(-armAngle));
+        rotation.setAroundZ(armAngle);
+        leftArmRotate.get().setRotation(rotation);
+        rotation.setAroundZ(-armAngle);
+        rightArmRotate.get().setRotation(rotation);
 
         robotRoot.update();
     }
@@ -293,17 +178,38 @@ public class Robot1 {
      * @param gl GL3 package for OpenGL
      */
     public void render(GL3 gl) {
+        animate();
+        robotRoot.draw(gl);
+    }
+
+    /**
+     * Method for moving the robot and adding it to a render queue, to be drawn when the queue is flushed.
+     * @param queue RenderQueue for the frame
+     */
+    public void render(RenderQueue queue) {
+        animate();
+        robotRoot.draw(queue);
+    }
+
+    private void animate() {
         double elapsedTime = this.getSeconds() - startTime - pauseDuration;
 
         if (!isPaused) {
-            float value = (float)Math.max(0.05,Math.min((float)-Math.sin(elapsedTime*1),.3));
-            rightEyeScale.setTransform(Mat4Transform.scale(0.225f, value, 0.2f));
-            leftEyeScale.setTransform(Mat4Transform.scale(0.225f, value, 0.2f));
+            float value = Math.max(0.05f, Math.min(-Trig.sin(elapsedTime), .3f));
+            Mat4Transform.scale(0.225f, value, 0.2f, scratch);
+            rightEyeScale.get().setTransform(scratch);
+            leftEyeScale.get().setTransform(scratch);
             // animateArms(elapsedTime + pauseDuration);
             bodyMovement(elapsedTime);
-            robotRoot.update();
         }
-        robotRoot.draw(gl);
+    }
+
+    /**
+     * Method for getting the index of the robot's scene graph, for finding its nodes by name or path.
+     * @return SceneIndex of the robot
+     */
+    public SceneIndex getSceneIndex() {
+        return index;
     }
 
     /**
@@ -7,6 +7,11 @@ public class SGNode {
   protected String name;
   protected ArrayList<SGNode> children;
   protected Mat4 worldTransform;
+  protected SGNode parent;
+  protected boolean dirty = true;       // this node's world transform needs recalculating
+  protected boolean childDirty = true;  // a node below this one is dirty
+  protected AABB bounds = new AABB();    // world-space box around every model in this subtree
+  protected int modelCount = 0;          // the number of models in this subtree
 
   public SGNode(String name) {
     children = new ArrayList<SGNode>();
@@ -16,19 +21,74 @@ public class SGNode {
 
   public void addChild(SGNode child) {
     children.add(child);
+    child.parent = this;
+    child.markDirty();
+  }
+
+  /**
+   * Marks this node as needing its world transform recalculated, which also recalculates everything below it.
+   * The ancestors are flagged so that the next update() walks down to this node and skips clean branches.
+   */
+  public void markDirty() {
+    dirty = true;
+    for (SGNode p = parent; p != null && !p.childDirty; p = p.parent) {
+      p.childDirty = true;
+    }
   }
   
+  /**
+   * Brings the world transforms up to date. Only dirty nodes, and the nodes below them, are recalculated.
+   */
   public void update() {
-    update(worldTransform);
+    update(worldTransform, false);
   }
   
   protected void update(Mat4 t) {
+    update(t, true);
+  }
+
+  /**
+   * @param t The world transform of the parent
+   * @param parentChanged true if t has changed since the last update, so this node must be recalculated
+   */
+  protected void update(Mat4 t, boolean parentChanged) {
+    boolean changed = parentChanged || dirty || worldTransform != t;
     worldTransform = t;
+    updateChildren(t, changed);
+  }
+
+  protected void updateChildren(Mat4 t, boolean changed) {
+    if (changed || childDirty) {
+      for (int i=0; i<children.size(); i++) {
+        children.get(i).update(t, changed);
+      }
+      updateBounds();
+    }
+    dirty = false;
+    childDirty = false;
+  }
+
+  /**
+   * Refits bounds to the children's bounds. Called by update() only on the nodes it recalculates,
+   * so the boxes of clean branches are reused.
+   */
+  protected void updateBounds() {
+    bounds.setEmpty();
+    modelCount = 0;
     for (int i=0; i<children.size(); i++) {
-      children.get(i).update(t);
+      SGNode child = children.get(i);
+      bounds.include(child.bounds);
+      modelCount += child.modelCount;
     }
   }
 
+  /**
+   * Returns the world-space box around the models in this subtree, as of the last update().
+   */
+  public AABB getBounds() {
+    return bounds;
+  }
+
   protected String getIndentString(int indent) {
     String s = ""+indent+" ";
     for (int i=0; i<indent; ++i) {
@@ -54,4 +114,61 @@ public class SGNode {
     }
   }
 
+  /**
+   * Adds the models in this subtree to queue instead of drawing them straight away.
+   * If the queue has a frustum, a subtree whose bounds are outside it is skipped with one test,
+   * and one whose bounds are inside it is added without testing anything below.
+   */
+  public void draw(RenderQueue queue) {
+    draw(queue, queue.getFrustum());
+  }
+
+  /**
+   * @param frustum The frustum this subtree still has to be tested against, or null if it is all visible
+   */
+  protected void draw(RenderQueue queue, Frustum frustum) {
+    if (frustum != null) {
+      int c = classify(frustum);
+      if (c == Frustum.OUTSIDE) {
+        queue.addCulled(modelCount);
+        return;
+      }
+      if (c == Frustum.INSIDE) frustum = null;
+    }
+    drawChildren(queue, frustum);
+  }
+
+  protected int classify(Frustum frustum) {
+    return bounds.isEmpty() ? Frustum.OUTSIDE : frustum.classify(bounds);
+  }
+
+  protected void drawChildren(RenderQueue queue, Frustum frustum) {
+    for (int i=0; i<children.size(); i++) {
+      children.get(i).draw(queue, frustum);
+    }
+  }
+
+  /**
+   * Returns the model nearest the start of the ray from origin in direction, testing against model bounds,
+   * or null if the ray hits none. Subtrees whose bounds the ray misses, or enters beyond the nearest hit so far, are skipped.
+   */
+  public ModelNode pick(Vec3 origin, Vec3 direction) {
+    ModelNode[] hit = new ModelNode[1];
+    pick(origin, direction, Float.POSITIVE_INFINITY, hit);
+    return hit[0];
+  }
+
+  // returns the distance of the nearest hit found, which is nearest if this subtree has nothing closer
+  protected float pick(Vec3 origin, Vec3 direction, float nearest, ModelNode[] hit) {
+    if (bounds.isEmpty() || bounds.intersectRay(origin, direction) >= nearest) return nearest;
+    return pickChildren(origin, direction, nearest, hit);
+  }
+
+  protected float pickChildren(Vec3 origin, Vec3 direction, float nearest, ModelNode[] hit) {
+    for (int i=0; i<children.size(); i++) {
+      nearest = children.get(i).pick(origin, direction, nearest, hit);
+    }
+    return nearest;
+  }
+
 }
\ No newline at end of file
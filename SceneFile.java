@@ -0,0 +1,557 @@
+import gmaths.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import com.jogamp.opengl.*;
+import com.jogamp.opengl.util.texture.*;
+
+/**
+ * A scene graph described as data, so that it can be changed without recompiling.
+ *
+ * Scenes are written as JSON, e.g. assets/scenes/robot2.json:
+ *   "materials": named materials, each {"ambient":[r,g,b], "diffuse":[r,g,b], "specular":[r,g,b], "shininess":s}
+ *   "models": named models, each {"mesh":"Cube"|"Sphere"|"TwoTriangles", "shader":[vertex path, fragment path],
+ *             "material": a material name or object, "textures":[diffuse name, specular name], "lod":[sizes]}
+ *             (textures and lod optional; the texture names are looked up in the TextureLibrary). A Sphere model
+ *             with a lod is drawn through an LODNode, using Sphere's levels of detail below each screen size.
+ *   "root": the root node. A node has a "name", optional "children", and either a "transform", which makes it a
+ *           TransformNode, or a "model" name, which makes it a ModelNode; otherwise it is a NameNode.
+ *           A TransformNode that the program changes after loading needs "dynamic":true (see SceneOptimizer).
+ *           A transform is a list of steps multiplied together in order, each one of {"translate":[x,y,z]},
+ *           {"scale":[x,y,z]} or {"scale":s}, {"rotateX":degrees} (also rotateY, rotateZ) or {"matrix":[16 values, row by row]}.
+ *
+ * A parsed scene is flat: the nodes are held in depth-first order with the index of their parent, and
+ * every transform is already multiplied out. The compiled (.scene) file stores exactly these arrays, so it is
+ * read with a few bulk copies from a memory-mapped file instead of being parsed. load() writes the compiled
+ * file next to the JSON file and uses it for as long as it is newer than the JSON.
+ */
+public class SceneFile {
+
+  public static final int NAME = 0;
+  public static final int TRANSFORM = 1;
+  public static final int MODEL = 2;
+  public static final int DYNAMIC_TRANSFORM = 3;
+
+  private static final int MAGIC = 0x314e4353;  // "SCN1"
+  private static final int VERSION = 3;
+  private static final int MATERIAL_FLOATS = 10;  // ambient, diffuse, specular, shininess
+  private static final int MODEL_STRINGS = 6;     // name, mesh, vertex shader, fragment shader, diffuse, specular
+  private static final int LOD_FLOATS = Sphere.LEVELS.length;  // the number of sizes, then the sizes
+
+  // strings: the models refer to them by index, -1 for none
+  private String[] strings;
+
+  private int modelCount;
+  private int[] modelStrings;    // MODEL_STRINGS per model
+  private float[] materials;     // MATERIAL_FLOATS per model
+  private float[] lods;          // LOD_FLOATS per model
+
+  private int nodeCount;
+  private int[] parents;         // -1 for the root
+  private int[] types;
+  private int[] names;
+  private int[] models;          // the model of a MODEL node, or -1
+  private float[] transforms;    // 16 per node, row by row; identity for NAME and MODEL nodes
+
+  private static HashMap<String,SceneFile> loaded = new HashMap<String,SceneFile>();  // used by get
+
+  // the models made by the first build(), shared by later builds with the same camera, lights and textures
+  private ModelMultipleLights[][] built;  // each model's levels of detail, just one for a model without a lod
+  private Camera builtCamera;
+  private Light[] builtLights;
+  private TextureLibrary builtTextures;
+  private int builds = 0;  // graphs using built that have not been released
+
+  private SceneFile() {
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  public int getModelCount() {
+    return modelCount;
+  }
+
+  /**
+   * Loads a scene from a .json or a compiled .scene file. For a .json file, the compiled file with the same
+   * name is used if it is newer, and is written otherwise.
+   * @throws UncheckedIOException if the file cannot be read
+   */
+  public static SceneFile load(String path) {
+    try {
+      if (!path.endsWith(".json")) return read(path);
+      Path json = Paths.get(path);
+      Path compiled = Paths.get(path.substring(0, path.length()-5)+".scene");
+      if (Files.exists(compiled) && Files.getLastModifiedTime(compiled).compareTo(Files.getLastModifiedTime(json)) >= 0) {
+        try {
+          return read(compiled.toString());
+        }
+        catch (IOException e) {
+          System.out.println("SceneFile: could not read "+compiled+", using "+json+" ("+e.getMessage()+")");
+        }
+      }
+      SceneFile scene = parse(new String(Files.readAllBytes(json), StandardCharsets.UTF_8));
+      try {
+        scene.write(compiled.toString());
+      }
+      catch (IOException e) {
+        System.out.println("SceneFile: could not write "+compiled+" ("+e.getMessage()+")");
+      }
+      return scene;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the scene loaded from path, loading it the first time it is asked for. Graphs built from the same
+   * SceneFile share their models, so a RenderQueue draws all the copies of a part with one instanced draw.
+   */
+  public static SceneFile get(String path) {
+    SceneFile scene = loaded.get(path);
+    if (scene == null) {
+      scene = load(path);
+      loaded.put(path, scene);
+    }
+    return scene;
+  }
+
+  // ***************************************************
+  /* JSON
+   */
+
+  /**
+   * Parses a scene from JSON text.
+   * @throws IllegalArgumentException if the text is not a valid scene
+   */
+  public static SceneFile parse(String json) {
+    Map<String,Object> file = asObject(JsonParser.parse(json), "scene");
+    Map<String,Object> materialDefs = file.containsKey("materials") ? asObject(file.get("materials"), "materials") : new HashMap<String,Object>();
+    Map<String,Object> modelDefs = file.containsKey("models") ? asObject(file.get("models"), "models") : new HashMap<String,Object>();
+
+    SceneFile scene = new SceneFile();
+    ArrayList<String> strings = new ArrayList<String>();
+    HashMap<String,Integer> stringIndex = new HashMap<String,Integer>();
+    HashMap<String,Integer> modelIndex = new HashMap<String,Integer>();
+
+    scene.modelCount = modelDefs.size();
+    scene.modelStrings = new int[scene.modelCount*MODEL_STRINGS];
+    scene.materials = new float[scene.modelCount*MATERIAL_FLOATS];
+    scene.lods = new float[scene.modelCount*LOD_FLOATS];
+    int m = 0;
+    for (Map.Entry<String,Object> e : modelDefs.entrySet()) {
+      Map<String,Object> def = asObject(e.getValue(), "model "+e.getKey());
+      List<Object> shader = asArray(def.get("shader"), "shader of model "+e.getKey());
+      List<Object> textures = def.containsKey("textures") ? asArray(def.get("textures"), "textures") : new ArrayList<Object>();
+      if (shader.size() != 2) throw new IllegalArgumentException("SceneFile: model "+e.getKey()+" needs a vertex and a fragment shader");
+      String[] values = { e.getKey(), asString(def.get("mesh"), "mesh of model "+e.getKey()), (String)shader.get(0), (String)shader.get(1),
+                          textures.size() > 0 ? (String)textures.get(0) : null, textures.size() > 1 ? (String)textures.get(1) : null };
+      for (int i=0; i<MODEL_STRINGS; ++i) {
+        scene.modelStrings[m*MODEL_STRINGS+i] = intern(values[i], strings, stringIndex);
+      }
+      Object material = def.get("material");
+      if (material instanceof String) {
+        material = materialDefs.get(material);
+        if (material == null) throw new IllegalArgumentException("SceneFile: no material "+def.get("material"));
+      }
+      parseMaterial(asObject(material, "material of model "+e.getKey()), scene.materials, m*MATERIAL_FLOATS);
+      if (def.containsKey("lod")) {
+        List<Object> sizes = asArray(def.get("lod"), "lod of model "+e.getKey());
+        if (!values[1].equals("Sphere")) throw new IllegalArgumentException("SceneFile: model "+e.getKey()+" has a lod, but only a Sphere has levels of detail");
+        if (sizes.size() >= LOD_FLOATS) throw new IllegalArgumentException("SceneFile: model "+e.getKey()+" has more than "+(LOD_FLOATS-1)+" lod sizes");
+        scene.lods[m*LOD_FLOATS] = sizes.size();
+        for (int i=0; i<sizes.size(); ++i) {
+          scene.lods[m*LOD_FLOATS+1+i] = asFloat(sizes.get(i), "lod of model "+e.getKey());
+          if (i > 0 && scene.lods[m*LOD_FLOATS+1+i] >= scene.lods[m*LOD_FLOATS+i]) {
+            throw new IllegalArgumentException("SceneFile: the lod sizes of model "+e.getKey()+" must get smaller");
+          }
+        }
+      }
+      modelIndex.put(e.getKey(), m);
+      m++;
+    }
+
+    ArrayList<Map<String,Object>> nodes = new ArrayList<Map<String,Object>>();
+    ArrayList<Integer> parents = new ArrayList<Integer>();
+    flatten(asObject(file.get("root"), "root"), -1, nodes, parents);
+    scene.nodeCount = nodes.size();
+    scene.parents = new int[scene.nodeCount];
+    scene.types = new int[scene.nodeCount];
+    scene.names = new int[scene.nodeCount];
+    scene.models = new int[scene.nodeCount];
+    scene.transforms = new float[scene.nodeCount*16];
+    for (int i=0; i<scene.nodeCount; ++i) {
+      Map<String,Object> node = nodes.get(i);
+      scene.parents[i] = parents.get(i);
+      scene.names[i] = intern(asString(node.get("name"), "node name"), strings, stringIndex);
+      scene.models[i] = -1;
+      Mat4 t = new Mat4(1);
+      if (node.containsKey("transform") && node.containsKey("model")) {
+        throw new IllegalArgumentException("SceneFile: node "+node.get("name")+" has both a transform and a model");
+      }
+      if (node.containsKey("transform")) {
+        scene.types[i] = Boolean.TRUE.equals(node.get("dynamic")) ? DYNAMIC_TRANSFORM : TRANSFORM;
+        t = parseTransform(asArray(node.get("transform"), "transform of "+node.get("name")));
+      }
+      else if (node.containsKey("model")) {
+        Integer model = modelIndex.get(node.get("model"));
+        if (model == null) throw new IllegalArgumentException("SceneFile: no model "+node.get("model"));
+        scene.types[i] = MODEL;
+        scene.models[i] = model;
+      }
+      else {
+        scene.types[i] = NAME;
+      }
+      t.storeRowMajor(scene.transforms, i*16);
+    }
+    scene.strings = strings.toArray(new String[0]);
+    return scene;
+  }
+
+  private static void flatten(Map<String,Object> node, int parent, List<Map<String,Object>> nodes, List<Integer> parents) {
+    int index = nodes.size();
+    nodes.add(node);
+    parents.add(parent);
+    if (node.containsKey("children")) {
+      for (Object child : asArray(node.get("children"), "children of "+node.get("name"))) {
+        flatten(asObject(child, "child of "+node.get("name")), index, nodes, parents);
+      }
+    }
+  }
+
+  private static int intern(String s, List<String> strings, Map<String,Integer> index) {
+    if (s == null) return -1;
+    Integer i = index.get(s);
+    if (i == null) {
+      i = strings.size();
+      strings.add(s);
+      index.put(s, i);
+    }
+    return i;
+  }
+
+  private static void parseMaterial(Map<String,Object> def, float[] dest, int offset) {
+    String[] keys = {"ambient", "diffuse", "specular"};
+    for (int k=0; k<3; ++k) {
+      float[] v = asFloats(def.get(keys[k]), 3, keys[k]);
+      System.arraycopy(v, 0, dest, offset+k*3, 3);
+    }
+    dest[offset+9] = asFloat(def.get("shininess"), "shininess");
+  }
+
+  private static Mat4 parseTransform(List<Object> steps) {
+    Mat4 m = new Mat4(1);
+    for (Object o : steps) {
+      Map<String,Object> step = asObject(o, "transform step");
+      if (step.size() != 1) throw new IllegalArgumentException("SceneFile: a transform step has one key, not "+step.keySet());
+      String op = step.keySet().iterator().next();
+      Object value = step.get(op);
+      Mat4 t;
+      switch (op) {
+        case "translate": {
+          float[] v = asFloats(value, 3, op);
+          t = Mat4Transform.translate(v[0], v[1], v[2]);
+          break;
+        }
+        case "scale": {
+          float[] v = (value instanceof Number) ? new float[] {asFloat(value, op), asFloat(value, op), asFloat(value, op)} : asFloats(value, 3, op);
+          t = Mat4Transform.scale(v[0], v[1], v[2]);
+          break;
+        }
+        case "rotateX": t = Mat4Transform.rotateAroundX(asFloat(value, op)); break;
+        case "rotateY": t = Mat4Transform.rotateAroundY(asFloat(value, op)); break;
+        case "rotateZ": t = Mat4Transform.rotateAroundZ(asFloat(value, op)); break;
+        case "matrix":
+          t = new Mat4();
+          t.loadRowMajor(asFloats(value, 16, op), 0);
+          break;
+        default: throw new IllegalArgumentException("SceneFile: unknown transform step "+op);
+      }
+      m = Mat4.multiply(m, t);
+    }
+    return m;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String,Object> asObject(Object o, String what) {
+    if (!(o instanceof Map)) throw new IllegalArgumentException("SceneFile: "+what+" should be an object");
+    return (Map<String,Object>)o;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> asArray(Object o, String what) {
+    if (!(o instanceof List)) throw new IllegalArgumentException("SceneFile: "+what+" should be an array");
+    return (List<Object>)o;
+  }
+
+  private static String asString(Object o, String what) {
+    if (!(o instanceof String)) throw new IllegalArgumentException("SceneFile: "+what+" should be a string");
+    return (String)o;
+  }
+
+  private static float asFloat(Object o, String what) {
+    if (!(o instanceof Number)) throw new IllegalArgumentException("SceneFile: "+what+" should be a number");
+    return ((Number)o).floatValue();
+  }
+
+  private static float[] asFloats(Object o, int n, String what) {
+    List<Object> list = asArray(o, what);
+    if (list.size() != n) throw new IllegalArgumentException("SceneFile: "+what+" should have "+n+" numbers");
+    float[] v = new float[n];
+    for (int i=0; i<n; ++i) {
+      v[i] = asFloat(list.get(i), what);
+    }
+    return v;
+  }
+
+  // ***************************************************
+  /* COMPILED FILES
+   * Little-endian. After the magic number and version:
+   *   string count, then each string as its byte length and UTF-8 bytes, padded to a multiple of 4 bytes
+   *   model count, then the model string indices (6 ints each), materials (10 floats each) and lods (LOD_FLOATS floats each)
+   *   node count, then the parents, types, names and models (an int array each) and the transforms (16 floats each)
+   */
+
+  public void write(String path) throws IOException {
+    byte[][] bytes = new byte[strings.length][];
+    int size = 4*3;
+    for (int i=0; i<strings.length; ++i) {
+      bytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+      size += 4 + pad(bytes[i].length);
+    }
+    size += 4 + 4*modelStrings.length + 4*materials.length + 4*lods.length;
+    size += 4 + 4*4*nodeCount + 4*transforms.length;
+
+    ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    b.putInt(MAGIC).putInt(VERSION);
+    b.putInt(strings.length);
+    for (byte[] s : bytes) {
+      b.putInt(s.length).put(s);
+      b.position(b.position() + pad(s.length)-s.length);
+    }
+    b.putInt(modelCount);
+    b.asIntBuffer().put(modelStrings);
+    b.position(b.position() + 4*modelStrings.length);
+    b.asFloatBuffer().put(materials);
+    b.position(b.position() + 4*materials.length);
+    b.asFloatBuffer().put(lods);
+    b.position(b.position() + 4*lods.length);
+    b.putInt(nodeCount);
+    for (int[] a : new int[][] {parents, types, names, models}) {
+      b.asIntBuffer().put(a);
+      b.position(b.position() + 4*a.length);
+    }
+    b.asFloatBuffer().put(transforms);
+    b.position(0);
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (b.hasRemaining()) {
+        channel.write(b);
+      }
+    }
+  }
+
+  /**
+   * Reads a compiled scene file by mapping it into memory.
+   */
+  public static SceneFile read(String path) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      ByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+      try {
+        if (b.getInt() != MAGIC) throw new IOException(path+" is not a compiled scene file");
+        if (b.getInt() != VERSION) throw new IOException(path+" was compiled by a different version");
+        SceneFile scene = new SceneFile();
+        scene.strings = new String[b.getInt()];
+        for (int i=0; i<scene.strings.length; ++i) {
+          int length = b.getInt();
+          scene.strings[i] = new String(readBytes(b, length), StandardCharsets.UTF_8);
+          b.position(b.position() + pad(length)-length);
+        }
+        scene.modelCount = b.getInt();
+        scene.modelStrings = readInts(b, scene.modelCount*MODEL_STRINGS);
+        scene.materials = readFloats(b, scene.modelCount*MATERIAL_FLOATS);
+        scene.lods = readFloats(b, scene.modelCount*LOD_FLOATS);
+        scene.nodeCount = b.getInt();
+        scene.parents = readInts(b, scene.nodeCount);
+        scene.types = readInts(b, scene.nodeCount);
+        scene.names = readInts(b, scene.nodeCount);
+        scene.models = readInts(b, scene.nodeCount);
+        scene.transforms = readFloats(b, scene.nodeCount*16);
+        return scene;
+      }
+      catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+        throw new IOException(path+" is truncated or damaged");
+      }
+    }
+  }
+
+  private static int pad(int n) {
+    return (n+3) & ~3;
+  }
+
+  private static byte[] readBytes(ByteBuffer b, int n) {
+    byte[] a = new byte[n];
+    b.get(a);
+    return a;
+  }
+
+  private static int[] readInts(ByteBuffer b, int n) {
+    int[] a = new int[n];
+    b.asIntBuffer().get(a);
+    b.position(b.position() + 4*n);
+    return a;
+  }
+
+  private static float[] readFloats(ByteBuffer b, int n) {
+    float[] a = new float[n];
+    b.asFloatBuffer().get(a);
+    b.position(b.position() + 4*n);
+    return a;
+  }
+
+  // ***************************************************
+  /* BUILDING
+   */
+
+  /**
+   * Creates the scene graph and updates it. The first build makes a ModelMultipleLights for each model, with
+   * its Mesh from the MeshCache; later builds with the same camera, lights and textures use the same models,
+   * each graph having its own nodes. Use release(gl, root) to delete the meshes again once no graph uses them.
+   * @return The root node
+   */
+  public SGNode build(GL3 gl, Camera camera, Light[] lights, TextureLibrary textures) {
+    if (built == null || camera != builtCamera || lights != builtLights || textures != builtTextures) {
+      built = buildModels(gl, camera, lights, textures);
+      builtCamera = camera;
+      builtLights = lights;
+      builtTextures = textures;
+      builds = 0;
+    }
+    builds++;
+    return buildNodes(camera, true);
+  }
+
+  /**
+   * Creates the scene graph with a ModelNode without a model in place of each model, and updates it. The models'
+   * nodes get their world transforms but have no bounds and cannot be drawn. Needs no GL context, so that checks
+   * such as SceneFoldCheck can run without a window.
+   */
+  SGNode buildGraph() {
+    return buildNodes(null, false);
+  }
+
+  private SGNode buildNodes(Camera camera, boolean withModels) {
+    SGNode[] nodes = new SGNode[nodeCount];
+    for (int i=0; i<nodeCount; ++i) {
+      String name = strings[names[i]];
+      switch (types[i]) {
+        case TRANSFORM:
+        case DYNAMIC_TRANSFORM:
+          Mat4 t = new Mat4();
+          t.loadRowMajor(transforms, i*16);
+          TransformNode transform = new TransformNode(name, t);
+          transform.setDynamic(types[i] == DYNAMIC_TRANSFORM);
+          nodes[i] = transform;
+          break;
+        case MODEL: nodes[i] = withModels ? createModelNode(name, models[i], camera) : new ModelNode(name, null); break;
+        default: nodes[i] = new NameNode(name);
+      }
+      if (parents[i] >= 0) nodes[parents[i]].addChild(nodes[i]);
+    }
+    nodes[0].update();
+    return nodes[0];
+  }
+
+  private SGNode createModelNode(String name, int model, Camera camera) {
+    ModelMultipleLights[] levels = built[model];
+    if (levels.length == 1) return new ModelNode(name, levels[0]);
+    float[] sizes = Arrays.copyOfRange(lods, model*LOD_FLOATS+1, model*LOD_FLOATS+levels.length);
+    LODNode node = new LODNode(name, camera, sizes);
+    for (int i=0; i<levels.length; ++i) {
+      node.addChild(new ModelNode(name+" lod "+i, levels[i]));
+    }
+    return node;
+  }
+
+  private ModelMultipleLights[][] buildModels(GL3 gl, Camera camera, Light[] lights, TextureLibrary textures) {
+    ModelMultipleLights[][] built = new ModelMultipleLights[modelCount][];
+    for (int i=0; i<modelCount; ++i) {
+      int s = i*MODEL_STRINGS, f = i*MATERIAL_FLOATS;
+      Shader shader = Shader.get(gl, string(s+2), string(s+3));
+      Material material = new Material(new Vec3(materials[f], materials[f+1], materials[f+2]),
+                                       new Vec3(materials[f+3], materials[f+4], materials[f+5]),
+                                       new Vec3(materials[f+6], materials[f+7], materials[f+8]), materials[f+9]);
+      Texture diffuse = (string(s+4) == null) ? null : textures.get(string(s+4));
+      Texture specular = (string(s+5) == null) ? null : textures.get(string(s+5));
+      built[i] = new ModelMultipleLights[1+(int)lods[i*LOD_FLOATS]];
+      for (int level=0; level<built[i].length; ++level) {
+        Mesh mesh = createMesh(gl, string(s+1), level);  // one MeshCache reference per model
+        built[i][level] = new ModelMultipleLights(string(s), mesh, new Mat4(1), shader, material, lights, camera, diffuse, specular);
+        built[i][level].setInstancedShader(Shader.getInstanced(gl, string(s+2), string(s+3)));
+      }
+    }
+    return built;
+  }
+
+  private String string(int i) {
+    int s = modelStrings[i];
+    return (s < 0) ? null : strings[s];
+  }
+
+  private static Mesh createMesh(GL3 gl, String shape, int level) {
+    switch (shape) {
+      case "Cube": return MeshCache.get(gl, Cube.vertices, Cube.indices);
+      case "Sphere": return MeshCache.get(gl, Sphere.levelVertices(level), Sphere.levelIndices(level));
+      case "TwoTriangles": return MeshCache.get(gl, TwoTriangles.vertices, TwoTriangles.indices);
+      default: throw new IllegalArgumentException("SceneFile: unknown mesh "+shape);
+    }
+  }
+
+  /**
+   * Gives back the meshes of a graph made by build() once no other graph built from this scene shares its models.
+   */
+  public void release(GL3 gl, SGNode root) {
+    if (built != null && built.length > 0 && usesModel(root, built[0][0])) {
+      if (--builds > 0) return;
+      for (ModelMultipleLights[] levels : built) {
+        for (ModelMultipleLights model : levels) {
+          model.dispose(gl);
+        }
+      }
+      built = null;
+      return;
+    }
+    dispose(gl, root);
+  }
+
+  private static boolean usesModel(SGNode node, ModelMultipleLights model) {
+    if (node instanceof ModelNode && ((ModelNode)node).getModel() == model) return true;
+    for (int i=0; i<node.children.size(); i++) {
+      if (usesModel(node.children.get(i), model)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Gives back the meshes of the models in a scene graph, once for each model however many nodes share it.
+   * Each model made by build() holds one MeshCache reference to its mesh.
+   */
+  public static void dispose(GL3 gl, SGNode root) {
+    disposeMeshes(gl, root, Collections.newSetFromMap(new IdentityHashMap<ModelMultipleLights,Boolean>()));
+  }
+
+  private static void disposeMeshes(GL3 gl, SGNode node, Set<ModelMultipleLights> disposed) {
+    if (node instanceof ModelNode) {
+      ModelMultipleLights model = ((ModelNode)node).getModel();
+      if (disposed.add(model)) model.dispose(gl);
+    }
+    for (int i=0; i<node.children.size(); i++) {
+      disposeMeshes(gl, node.children.get(i), disposed);
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * An index of the nodes in a scene graph by name and by path, built once so that nodes can be found
+ * with a hash lookup instead of walking the children and comparing names.
+ *
+ * A path is the names from the root down to the node, separated by '/', e.g. "robotStack/robot transform".
+ * If several children of one node share a name, the second and later ones get [1], [2], ... after
+ * the name in their paths. A name shared by several nodes anywhere in the graph finds the first in depth-first order.
+ *
+ * The index is not updated when the graph changes; build a new one.
+ */
+public class SceneIndex {
+
+  private static final char SEPARATOR = '/';
+
+  private HashMap<String,SGNode> byPath = new HashMap<String,SGNode>();
+  private HashMap<String,SGNode> byName = new HashMap<String,SGNode>();
+  private HashMap<SGNode,String> paths = new HashMap<SGNode,String>();
+  private ArrayList<SGNode> nodes = new ArrayList<SGNode>();
+
+  public SceneIndex(SGNode root) {
+    add(root, root.name);
+  }
+
+  private void add(SGNode node, String path) {
+    byPath.put(path, node);
+    byName.putIfAbsent(node.name, node);
+    paths.put(node, path);
+    nodes.add(node);
+    HashMap<String,Integer> seen = new HashMap<String,Integer>();
+    for (int i=0; i<node.children.size(); i++) {
+      SGNode child = node.children.get(i);
+      int n = seen.merge(child.name, 1, Integer::sum)-1;
+      add(child, path+SEPARATOR+child.name+(n == 0 ? "" : "["+n+"]"));
+    }
+  }
+
+  /**
+   * Returns the node with this path, or, if the key has no '/', the first node with this name.
+   * Returns null if there is none.
+   */
+  public SGNode find(String key) {
+    SGNode node = byPath.get(key);
+    return (node != null || key.indexOf(SEPARATOR) >= 0) ? node : byName.get(key);
+  }
+
+  /**
+   * Returns the path of node, or null if it is not in the index.
+   */
+  public String getPath(SGNode node) {
+    return paths.get(node);
+  }
+
+  /**
+   * Returns the number of nodes in the index.
+   */
+  public int size() {
+    return nodes.size();
+  }
+
+  /**
+   * Returns a handle to the node found by find(key), checking that it exists and has the given type.
+   * Look handles up once, e.g. when building the scene, and use them every frame.
+   * @throws IllegalArgumentException if there is no such node or it is not a type
+   */
+  public <T extends SGNode> Handle<T> handle(String key, Class<T> type) {
+    SGNode node = find(key);
+    if (node == null) {
+      throw new IllegalArgumentException("SceneIndex: no node '"+key+"'");
+    }
+    if (!type.isInstance(node)) {
+      throw new IllegalArgumentException("SceneIndex: '"+key+"' is a "+node.getClass().getName()+", not a "+type.getName());
+    }
+    return new Handle<T>(type.cast(node), getPath(node));
+  }
+
+  /**
+   * Returns a handle to a TransformNode and marks the node dynamic, since it is looked up to be changed.
+   */
+  public Handle<TransformNode> transform(String key) {
+    Handle<TransformNode> h = handle(key, TransformNode.class);
+    h.get().setDynamic(true);
+    return h;
+  }
+
+  public Handle<ModelNode> model(String key) {
+    return handle(key, ModelNode.class);
+  }
+
+  public void print() {
+    for (int i=0; i<nodes.size(); i++) {
+      System.out.println(paths.get(nodes.get(i)));
+    }
+  }
+
+  /**
+   * A typed reference to a node found in a SceneIndex, which also remembers the node's path.
+   */
+  public static final class Handle<T extends SGNode> {
+    private final T node;
+    private final String path;
+
+    private Handle(T node, String path) {
+      this.node = node;
+      this.path = path;
+    }
+
+    public T get() {
+      return node;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public String toString() {
+      return path;
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+import gmaths.*;
+import java.util.ArrayList;
+
+/**
+ * Optimisations applied to a scene graph once it has been built.
+ */
+public class SceneOptimizer {
+
+  private SceneOptimizer() {
+  }
+
+  /**
+   * Removes the static TransformNodes that can be multiplied into the transforms below them, so that
+   * updating the graph does fewer matrix multiplies. A TransformNode is static unless it has been marked dynamic
+   * (TransformNode.setDynamic, "dynamic" in a SceneFile, or a SceneIndex handle).
+   *
+   * A static TransformNode is removed if every path down from it reaches a static TransformNode, passing
+   * only through NameNodes: its transform is premultiplied into each of those, and its children take its place.
+   * This never adds work to an update, as folding a static transform into a dynamic one would.
+   * Models keep their world transforms, apart from float rounding, and so does everything a kept TransformNode
+   * passes to its children. A NameNode moved up gets its new parent's world transform.
+   *
+   * Look up any node that will be changed, and mark it dynamic, before calling this. Changing a transform
+   * that was folded throws IllegalStateException.
+   * @return the number of TransformNodes removed
+   */
+  public static int foldStaticTransforms(SGNode root) {
+    int removed = 0;
+    for (SGNode child : new ArrayList<SGNode>(root.children)) {
+      removed += foldStaticTransforms(child);
+    }
+    if (root.parent == null || !isStatic(root)) return removed;
+    ArrayList<TransformNode> targets = new ArrayList<TransformNode>();
+    if (!findTargets(root, targets)) return removed;
+
+    Mat4 t = ((TransformNode)root).getTransform();
+    for (int i=0; i<targets.size(); i++) {
+      targets.get(i).fold(t);
+    }
+    SGNode parent = root.parent;
+    int index = parent.children.indexOf(root);
+    parent.children.remove(index);
+    for (int i=0; i<root.children.size(); i++) {
+      SGNode child = root.children.get(i);
+      parent.children.add(index+i, child);
+      child.parent = parent;
+      child.markDirty();
+    }
+    root.children.clear();
+    root.parent = null;
+    ((TransformNode)root).setFolded();
+    return removed+1;
+  }
+
+  private static boolean isStatic(SGNode node) {
+    return node instanceof TransformNode && !((TransformNode)node).isDynamic();
+  }
+
+  // finds the nodes the transform of node would be folded into, or returns false if it cannot be folded
+  private static boolean findTargets(SGNode node, ArrayList<TransformNode> targets) {
+    for (int i=0; i<node.children.size(); i++) {
+      SGNode child = node.children.get(i);
+      if (isStatic(child)) {
+        targets.add((TransformNode)child);
+      }
+      else if (child.getClass() == NameNode.class) {
+        if (!findTargets(child, targets)) return false;
+      }
+      else {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of TransformNodes in the graph, each of which is one matrix multiply when the graph is
+   * recalculated from the root.
+   */
+  public static int countTransforms(SGNode root) {
+    int n = (root instanceof TransformNode) ? 1 : 0;
+    for (int i=0; i<root.children.size(); i++) {
+      n += countTransforms(root.children.get(i));
+    }
+    return n;
+  }
+
+}
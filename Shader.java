@@ -1,18 +1,25 @@
 import gmaths.*;
 import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.charset.Charset;
+import java.util.HashMap;
+import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.util.glsl.*;  
   
 public class Shader {
   
   private static final boolean DISPLAY_SHADERS = false;
+
+  private static HashMap<String,Shader> shaders = new HashMap<String,Shader>();  // used by get
   
   private int ID;
   private String vertexShaderSource;
   private String fragmentShaderSource;
+  private FloatBuffer matrixBuffer = Buffers.newDirectFloatBuffer(16);  // reused by setMat4
+  private FloatBuffer matrix3Buffer = Buffers.newDirectFloatBuffer(9);  // reused by setMat3
   
   /* The constructor */
   public Shader(GL3 gl, String vertexPath, String fragmentPath) {
@@ -27,6 +34,42 @@ public class Shader {
     ID = compileAndLink(gl);
   }
   
+  /**
+   * Returns the shader program for this pair of files, compiling it the first time it is asked for.
+   * Models sharing a program means fewer program changes when drawing, especially through a RenderQueue.
+   */
+  public static Shader get(GL3 gl, String vertexPath, String fragmentPath) {
+    String key = vertexPath+"|"+fragmentPath;
+    Shader shader = shaders.get(key);
+    if (shader == null) {
+      shader = new Shader(gl, vertexPath, fragmentPath);
+      shaders.put(key, shader);
+    }
+    return shader;
+  }
+
+  /**
+   * Deletes the programs handed out by get and empties the cache, so that the next get compiles again.
+   * Call when the GL context is disposed: a new context (e.g. after the canvas is re-parented) must not be
+   * given program ids from the old one.
+   */
+  public static void clearCache(GL3 gl) {
+    for (Shader shader : shaders.values()) {
+      gl.glDeleteProgram(shader.ID);
+    }
+    shaders.clear();
+  }
+
+  /**
+   * Returns the instanced version of get(gl, vertexPath, fragmentPath), for ModelMultipleLights.setInstancedShader,
+   * or null if the vertex shader has none. vs_standard.txt has one, vs_instanced.txt.
+   */
+  public static Shader getInstanced(GL3 gl, String vertexPath, String fragmentPath) {
+    String standard = "vs_standard.txt";
+    if (!vertexPath.endsWith(standard)) return null;
+    return get(gl, vertexPath.substring(0, vertexPath.length()-standard.length())+"vs_instanced.txt", fragmentPath);
+  }
+
   public int getID() {
     return ID;
   }
@@ -65,6 +108,23 @@ public class Shader {
     gl.glUniformMatrix4fv(location, 1, false, f, 0);
   }
   
+  public void setMat4(GL3 gl, String name, Mat4 m) {
+    int location = gl.glGetUniformLocation(ID, name);
+    m.store(matrixBuffer);
+    gl.glUniformMatrix4fv(location, 1, false, matrixBuffer);
+  }
+
+  // sets a mat3 uniform from the upper 3x3 part of m
+  public void setMat3(GL3 gl, String name, Mat4 m) {
+    int location = gl.glGetUniformLocation(ID, name);
+    for (int j=0; j<3; ++j) {
+      for (int i=0; i<3; ++i) {
+        matrix3Buffer.put(j*3+i, m.get(i,j));
+      }
+    }
+    gl.glUniformMatrix3fv(location, 1, false, matrix3Buffer);
+  }
+  
   public void setVec3(GL3 gl, String name, Vec3 v) {
     int location = gl.glGetUniformLocation(ID, name);
     gl.glUniform3f(location, v.x, v.y, v.z);
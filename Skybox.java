@@ -19,6 +19,10 @@ public class Skybox {
     private Shader shader;
     private Camera camera;
     private Texture skyboxTexture;
+    private Mat4 model = Mat4Transform.scale(0.5f, 0.5f, 0.5f);
+    private Mat4 camViewMatrix = new Mat4(1);
+    private Mat4 projection = new Mat4(1);
+    private Mat4 rotation = new Mat4(1);
 
     private int vertexXYZFloats = 3;
     private int[] vertexBufferId = new int[1];
@@ -31,7 +35,7 @@ public class Skybox {
      * @param cam Camera class for collecting the perspective and view matrices.
      */
     public Skybox(GL3 gl, Texture t, Camera cam) {
-        shader = new Shader(gl, "assets/shaders/vs_skybox.txt", "assets/shaders/fs_skybox.txt");
+        shader = Shader.get(gl, "assets/shaders/vs_skybox.txt", "assets/shaders/fs_skybox.txt");
         this.skyboxTexture = t;
         this.camera = cam;
         fillBuffers(gl);
@@ -97,23 +101,20 @@ public class Skybox {
      */
     public void render(GL3 gl, double elapsed) {
         double angle = (elapsed * 10.0);
-        Mat4 model = Mat4Transform.scale(0.5f, 0.5f, 0.5f); // Scale up by 10x
-        
-        Mat4 camViewMatrix = camera.getViewMatrix();
+        camViewMatrix.set(camera.getViewMatrix()); // copied, as the camera reuses its view matrix
         camViewMatrix.set(3, 0, 0.0f);
         camViewMatrix.set(3, 1, 0.0f);
         camViewMatrix.set(3, 2, 0.0f);
 
-        Mat4 projection = camera.getPerspectiveMatrix();
-
         // model = Mat4.multiply(model, Mat4Transform.rotateAroundZ((float)angle));
 
-        projection = Mat4.multiply(projection, Mat4Transform.rotateAroundY((float)angle));
+        Mat4Transform.rotateAroundY((float)angle, rotation);
+        Mat4.multiplyInto(camera.getPerspectiveMatrix(), rotation, projection);
         
         shader.use(gl);
-        shader.setFloatArray(gl, "model", model.toFloatArrayForGLSL());
-        shader.setFloatArray(gl, "view", camViewMatrix.toFloatArrayForGLSL());
-        shader.setFloatArray(gl, "projection", projection.toFloatArrayForGLSL());
+        shader.setMat4(gl, "model", model);
+        shader.setMat4(gl, "view", camViewMatrix);
+        shader.setMat4(gl, "projection", projection);
 
         shader.setInt(gl, "skybox", 0);  // be careful to match these with GL_TEXTURE0 and GL_TEXTURE1
         gl.glActiveTexture(GL.GL_TEXTURE0);
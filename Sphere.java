@@ -10,31 +10,62 @@ public final class Sphere {
  
   private static final int XLONG = 30;
   private static final int YLAT = 30;
+
+  // the number of vertices round and from pole to pole of each level of detail, the full sphere first
+  public static final int[] LEVELS = {XLONG, 16, 10, 6};
+  
+  // each level, ordered for the vertex cache by MeshOptimizer
+  private static final float[][] levelVertices = new float[LEVELS.length][];
+  private static final int[][] levelIndices = new int[LEVELS.length][];
+
+  static {
+    for (int level=0; level<LEVELS.length; ++level) {
+      int ylat = (level == 0) ? YLAT : LEVELS[level];
+      levelVertices[level] = createVertices(LEVELS[level], ylat);
+      levelIndices[level] = createIndices(LEVELS[level], ylat);
+      MeshOptimizer.optimize(levelVertices[level], levelIndices[level], 8);
+    }
+  }
   
-  public static final float[] vertices = createVertices();
-  public static final int[] indices = createIndices();
+  public static final float[] vertices = levelVertices[0];
+  public static final int[] indices = levelIndices[0];
 
-  private static float[] createVertices() {
+  /**
+   * Returns the vertices of level of detail level, a sphere of LEVELS[level] by LEVELS[level] vertices.
+   */
+  public static float[] levelVertices(int level) {
+    return levelVertices[level].clone();
+  }
+
+  public static int[] levelIndices(int level) {
+    return levelIndices[level].clone();
+  }
+
+  /**
+   * Creates a sphere of diameter 1 with xlong vertices round each line of latitude and ylat from pole to pole.
+   * The vertices and triangles are in latitude order; the levels above are reordered for the vertex cache.
+   */
+  public static float[] createVertices(int xlong, int ylat) {
     double r = 0.5;
     int step = 8;
     //float[] 
-    float[] vertices = new float[XLONG*YLAT*step];
-    for (int j = 0; j<YLAT; ++j) {
-      double b = Math.toRadians(-90+180*(double)(j)/(YLAT-1));
-      for (int i = 0; i<XLONG; ++i) {
-        double a = Math.toRadians(360*(double)(i)/(XLONG-1));
+    float[] vertices = new float[xlong*ylat*step];
+    for (int j = 0; j<ylat; ++j) {
+      double b = Math.toRadians(-90+180*(double)(j)/(ylat-1));
+      for (int i = 0; i<xlong; ++i) {
+        double a = Math.toRadians(360*(double)(i)/(xlong-1));
         double z = Math.cos(b) * Math.cos(a);
         double x = Math.cos(b) * Math.sin(a);
         double y = Math.sin(b);
-        int base = j*XLONG*step;
+        int base = j*xlong*step;
         vertices[base + i*step+0] = (float)(r*x);
         vertices[base + i*step+1] = (float)(r*y);
         vertices[base + i*step+2] = (float)(r*z); 
         vertices[base + i*step+3] = (float)x;
         vertices[base + i*step+4] = (float)y;
         vertices[base + i*step+5] = (float)z;
-        vertices[base + i*step+6] = (float)(i)/(float)(XLONG-1);
-        vertices[base + i*step+7] = (float)(j)/(float)(YLAT-1);
+        vertices[base + i*step+6] = (float)(i)/(float)(xlong-1);
+        vertices[base + i*step+7] = (float)(j)/(float)(ylat-1);
       }
     }
     return vertices;
@@ -45,17 +76,17 @@ public final class Sphere {
     //}
   }
   
-  private static int[] createIndices() {
-    int[] indices = new int[(XLONG-1)*(YLAT-1)*6];
-    for (int j = 0; j<YLAT-1; ++j) {
-      for (int i = 0; i<XLONG-1; ++i) {
-        int base = j*(XLONG-1)*6;
-        indices[base + i*6+0] = j*XLONG+i;
-        indices[base + i*6+1] = j*XLONG+i+1;
-        indices[base + i*6+2] = (j+1)*XLONG+i+1;
-        indices[base + i*6+3] = j*XLONG+i;
-        indices[base + i*6+4] = (j+1)*XLONG+i+1;
-        indices[base + i*6+5] = (j+1)*XLONG+i;
+  public static int[] createIndices(int xlong, int ylat) {
+    int[] indices = new int[(xlong-1)*(ylat-1)*6];
+    for (int j = 0; j<ylat-1; ++j) {
+      for (int i = 0; i<xlong-1; ++i) {
+        int base = j*(xlong-1)*6;
+        indices[base + i*6+0] = j*xlong+i;
+        indices[base + i*6+1] = j*xlong+i+1;
+        indices[base + i*6+2] = (j+1)*xlong+i+1;
+        indices[base + i*6+3] = j*xlong+i;
+        indices[base + i*6+4] = (j+1)*xlong+i+1;
+        indices[base + i*6+5] = (j+1)*xlong+i;
       }
     }
     return indices;
@@ -4,22 +4,94 @@ import com.jogamp.opengl.*;
 public class TransformNode extends SGNode {
 
   private Mat4 transform;
+  private Mat4 childTransform = new Mat4(1);  // worldTransform*transform, reused every update
+  private boolean dynamic = false;   // changed after the scene is built, so SceneOptimizer must keep it
+  private boolean folded = false;    // SceneOptimizer has merged another transform into this one, or removed it
+  private Quat rotation;             // the rotation last set by setRotation, while transform still holds it
 
   public TransformNode(String name, Mat4 t) {
     super(name);
     transform = new Mat4(t);
   }
   
+  public TransformNode(String name, Quat q) {
+    super(name);
+    transform = q.toMat4();
+  }
+  
+  Mat4 getTransform() {
+    return transform;
+  }
+
+  /**
+   * Marks the transform as one that will be changed after the scene is built, so that
+   * SceneOptimizer.foldStaticTransforms leaves it alone. SceneIndex handles do this for the nodes they find.
+   */
+  public void setDynamic(boolean b) {
+    dynamic = b;
+  }
+
+  public boolean isDynamic() {
+    return dynamic;
+  }
+
+  // premultiplies the transform by m, for SceneOptimizer
+  void fold(Mat4 m) {
+    Mat4.multiplyInto(m, transform, transform);
+    rotation = null;
+    folded = true;
+    markDirty();
+  }
+
+  // for SceneOptimizer, when it removes this node
+  void setFolded() {
+    folded = true;
+  }
+
+  /**
+   * Sets the transform. Setting the same values again does not mark the node dirty.
+   * @throws IllegalStateException if the node was not dynamic and SceneOptimizer has folded it
+   */
   public void setTransform(Mat4 m) {
-    transform = new Mat4(m);
+    checkNotFolded();
+    if (Mat4.equals(transform, m)) return;
+    transform.set(m);
+    rotation = null;
+    markDirty();
+  }
+
+  /**
+   * Sets the transform to the rotation held in the (unit) quaternion q. Setting the rotation it already holds
+   * does not mark the node dirty.
+   */
+  public void setRotation(Quat q) {
+    checkNotFolded();
+    if (rotation == null) {
+      rotation = new Quat(q);
+    }
+    else if (rotation.x == q.x && rotation.y == q.y && rotation.z == q.z && rotation.w == q.w) {
+      return;
+    }
+    else {
+      rotation.set(q);
+    }
+    q.toMat4(transform);
+    markDirty();
   }
   
-  protected void update(Mat4 t) {
+  private void checkNotFolded() {
+    if (folded) {
+      throw new IllegalStateException("TransformNode "+name+" has been folded into other transforms; mark it dynamic before optimising");
+    }
+  }
+
+  protected void update(Mat4 t, boolean parentChanged) {
+    boolean changed = parentChanged || dirty || worldTransform != t;
     worldTransform = t;
-    t = Mat4.multiply(worldTransform, transform);
-    for (int i=0; i<children.size(); i++) {
-      children.get(i).update(t);
-    }   
+    if (changed) {
+      Mat4.multiplyInto(worldTransform, transform, childTransform);
+    }
+    updateChildren(childTransform, changed);
   }
 
   public void print(int indent, boolean inFull) {
@@ -0,0 +1,159 @@
+import java.nio.*;
+import com.jogamp.opengl.*;
+
+/**
+ * How a Mesh stores its vertices in the vertex buffer. Every format feeds the same attributes, so the shaders
+ * do not change: position at location 0, normal at 1 and texture coordinates at 2, the packed ones normalised
+ * by OpenGL as they are read.
+ *
+ *   FLOAT      position, normal and texture coordinates as floats                         32 bytes
+ *   PACKED     position as floats, normal as GL_INT_2_10_10_10_REV, texture coordinates
+ *              as half floats                                                              20 bytes
+ *   QUANTISED  as PACKED, but position as normalised shorts, so it must be within [-1,1]  16 bytes
+ *
+ * A packed normal is within 1/511 of the original, a half float texture coordinate within 1/2048 of it
+ * below 1 (and 1/1024 below 2), and a quantised position within 1/65534 of it.
+ */
+public enum VertexFormat {
+
+  FLOAT(32), PACKED(20), QUANTISED(16);
+
+  private static final int POSITION = 0, NORMAL = 1, TEXTURE = 2;  // attribute locations
+  private static final float SHORT_SCALE = 32767;
+  private static final float NORMAL_SCALE = 511;
+
+  private final int stride;
+
+  private VertexFormat(int stride) {
+    this.stride = stride;
+  }
+
+  /**
+   * Returns the number of bytes in the vertex buffer for each vertex.
+   */
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * Returns the error in positions stored in this format, which a mesh's bounds must allow for.
+   */
+  public float getPositionError() {
+    return (this == QUANTISED) ? 0.5f/SHORT_SCALE : 0;
+  }
+
+  /**
+   * Returns false if the positions are outside what the format can hold: [-1,1] for QUANTISED.
+   * @param vertices x,y,z, nx,ny,nz, s,t for each vertex
+   */
+  public boolean canHold(float[] vertices) {
+    if (this != QUANTISED) return true;
+    for (int i=0; i<vertices.length; i+=8) {
+      for (int j=0; j<3; ++j) {
+        if (!(Math.abs(vertices[i+j]) <= 1)) return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the vertices in this format, ready for glBufferData.
+   * @param vertices x,y,z, nx,ny,nz, s,t for each vertex
+   */
+  public ByteBuffer pack(float[] vertices) {
+    int n = vertices.length/8;
+    ByteBuffer b = ByteBuffer.allocateDirect(n*stride).order(ByteOrder.nativeOrder());
+    for (int i=0; i<n; ++i) {
+      int v = i*8;
+      if (this == FLOAT) {
+        for (int j=0; j<8; ++j) {
+          b.putFloat(vertices[v+j]);
+        }
+        continue;
+      }
+      if (this == QUANTISED) {
+        b.putShort(quantise(vertices[v])).putShort(quantise(vertices[v+1])).putShort(quantise(vertices[v+2])).putShort((short)0);
+      }
+      else {
+        b.putFloat(vertices[v]).putFloat(vertices[v+1]).putFloat(vertices[v+2]);
+      }
+      b.putInt(packNormal(vertices[v+3], vertices[v+4], vertices[v+5]));
+      b.putShort(halfFloat(vertices[v+6])).putShort(halfFloat(vertices[v+7]));
+    }
+    b.flip();
+    return b;
+  }
+
+  /**
+   * Sets the attribute pointers for the vertex buffer bound to GL_ARRAY_BUFFER, and enables them.
+   */
+  public void setAttributes(GL3 gl) {
+    switch (this) {
+      case FLOAT:
+        gl.glVertexAttribPointer(POSITION, 3, GL.GL_FLOAT, false, stride, 0);
+        gl.glVertexAttribPointer(NORMAL, 3, GL.GL_FLOAT, false, stride, 3*Float.BYTES);
+        gl.glVertexAttribPointer(TEXTURE, 2, GL.GL_FLOAT, false, stride, 6*Float.BYTES);
+        break;
+      case PACKED:
+        gl.glVertexAttribPointer(POSITION, 3, GL.GL_FLOAT, false, stride, 0);
+        gl.glVertexAttribPointer(NORMAL, 4, GL3.GL_INT_2_10_10_10_REV, true, stride, 12);
+        gl.glVertexAttribPointer(TEXTURE, 2, GL.GL_HALF_FLOAT, false, stride, 16);
+        break;
+      case QUANTISED:
+        gl.glVertexAttribPointer(POSITION, 3, GL.GL_SHORT, true, stride, 0);
+        gl.glVertexAttribPointer(NORMAL, 4, GL3.GL_INT_2_10_10_10_REV, true, stride, 8);
+        gl.glVertexAttribPointer(TEXTURE, 2, GL.GL_HALF_FLOAT, false, stride, 12);
+        break;
+    }
+    gl.glEnableVertexAttribArray(POSITION);
+    gl.glEnableVertexAttribArray(NORMAL);
+    gl.glEnableVertexAttribArray(TEXTURE);
+  }
+
+  private static short quantise(float f) {
+    return (short)Math.round(Math.max(-1, Math.min(1, f))*SHORT_SCALE);
+  }
+
+  /**
+   * Packs a normal into GL_INT_2_10_10_10_REV: x in the lowest 10 bits, then y and z, each a signed
+   * normalised value, and w (unused) in the top 2 bits.
+   */
+  public static int packNormal(float x, float y, float z) {
+    return (packSigned10(x)) | (packSigned10(y) << 10) | (packSigned10(z) << 20);
+  }
+
+  private static int packSigned10(float f) {
+    return Math.round(Math.max(-1, Math.min(1, f))*NORMAL_SCALE) & 0x3ff;
+  }
+
+  /**
+   * Converts a float to an IEEE half float, rounding to the nearest (ties to even). Values too big for
+   * a half become infinity; ones too small become a half denormal or zero.
+   */
+  public static short halfFloat(float f) {
+    int bits = Float.floatToRawIntBits(f);
+    int sign = (bits >>> 16) & 0x8000;
+    int exponent = (bits >>> 23) & 0xff;
+    int mantissa = bits & 0x7fffff;
+    if (exponent == 0xff) {  // infinity or NaN
+      return (short)(sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+    }
+    int e = exponent-127+15;
+    if (e >= 0x1f) return (short)(sign | 0x7c00);
+    if (e <= 0) {
+      if (e < -10) return (short)sign;
+      mantissa |= 0x800000;  // the implicit 1, shifted down into a denormal
+      int shift = 14-e;
+      int half = mantissa >> shift;
+      int rest = mantissa & ((1 << shift)-1);
+      int halfway = 1 << (shift-1);
+      if (rest > halfway || (rest == halfway && (half & 1) != 0)) half++;
+      return (short)(sign | half);
+    }
+    int half = (e << 10) | (mantissa >> 13);
+    int rest = mantissa & 0x1fff;
+    if (rest > 0x1000 || (rest == 0x1000 && (half & 1) != 0)) half++;  // may carry into the exponent, which is right
+    return (short)(sign | half);
+  }
+
+}
@@ -48,29 +48,29 @@ public class Walls {
     this.camera = cameraIn;
     this.lights = lights;
     String name = "flat plane";
-    Mesh mesh = new Mesh(gl, TwoTriangles.vertices.clone(), TwoTriangles.indices.clone());
-    Shader shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+    Mesh mesh = MeshCache.get(gl, TwoTriangles.vertices, TwoTriangles.indices);
+    Shader shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
     Material material = new Material(new Vec3(0.3f, 0.3f, 0.3f), new Vec3(0.7f, 0.7f, 0.7f), new Vec3(0.3f, 0.3f, 0.3f), 20.0f);
     Mat4 modelMatrix = Mat4Transform.scale(backWallLength,1f,otherWallLength);
     tt1 = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("floor_diffuse"), textures.get("floor_spec"));
 
     name = "rightWall";
-    mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-    shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_repeated_overlay_2t.txt");
+    mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+    shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_repeated_overlay_2t.txt");
     material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
     modelMatrix = Mat4.multiply(Mat4Transform.translate((backWallLength / 2) + (wallThickness / 2),wallHeight / 2,0f),Mat4Transform.scale(wallThickness,wallHeight,otherWallLength));
     rightWall = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("metal_wall_diff"), textures.get("vader_repeat"));
 
     name = "backWall";
-    mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-    shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+    mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+    shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
     material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
     modelMatrix = Mat4.multiply(Mat4Transform.translate(0,wallHeight/2,-((otherWallLength/2) + (wallThickness / 2))), Mat4Transform.scale(backWallLength+(wallThickness*2),wallHeight,wallThickness));
     backWall = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("name_diff"), textures.get("name_spec"));
 
     name = "ceiling";
-    mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-    shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_repeated_m_2t.txt");
+    mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+    shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_repeated_m_2t.txt");
     material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
     modelMatrix = Mat4.multiply(Mat4Transform.translate(0,wallHeight+(wallThickness/2),0), Mat4Transform.scale(backWallLength+(wallThickness*2),wallThickness,otherWallLength));
     ceiling = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("roof"), textures.get("roof_spec"));
@@ -78,29 +78,29 @@ public class Walls {
     // Window Wall ----------------------------------------------------------------------
 
     name = "leftWall1";
-    mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-    shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+    mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+    shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
     material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
     modelMatrix = Mat4.multiply(Mat4Transform.translate(-((backWallLength / 2) + (wallThickness / 2)),wallHeight / 2,(otherWallLength *.25f / 2) - (otherWallLength / 2)), Mat4Transform.scale(wallThickness,wallHeight,otherWallLength *.25f));
     windowWall1 = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("silver_diff"), textures.get("pure_spec"));
 
     name = "leftWall2";
-    mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-    shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+    mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+    shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
     material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
     modelMatrix = Mat4.multiply(Mat4Transform.translate(-((backWallLength / 2) + (wallThickness / 2)),wallHeight / 2,-(otherWallLength *.25f / 2) + (otherWallLength / 2)), Mat4Transform.scale(wallThickness,wallHeight,otherWallLength *.25f));
     windowWall2 = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("silver_diff"), textures.get("pure_spec"));
 
     name = "leftWall3Upper";
-    mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-    shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+    mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+    shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
     material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
     modelMatrix = Mat4.multiply(Mat4Transform.translate(-((backWallLength / 2) + (wallThickness / 2)),  (wallHeight * 7 / 8),0), Mat4Transform.scale(wallThickness,wallHeight/4,otherWallLength*.5f));
     windowWall3Upper = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("silver_diff"), textures.get("pure_spec"));
 
     name = "leftWall3Lower";
-    mesh = new Mesh(gl, Cube.vertices.clone(), Cube.indices.clone());
-    shader = new Shader(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
+    mesh = MeshCache.get(gl, Cube.vertices, Cube.indices);
+    shader = Shader.get(gl, "assets/shaders/vs_standard.txt", "assets/shaders/fs_standard_m_2t.txt");
     material = new Material(new Vec3(1.0f, 0.5f, 0.31f), new Vec3(1.0f, 0.5f, 0.31f), new Vec3(0.5f, 0.5f, 0.5f), 32.0f);
     modelMatrix = Mat4.multiply(Mat4Transform.translate(-((backWallLength / 2) + (wallThickness / 2)), (wallHeight / 8),0), Mat4Transform.scale(wallThickness,wallHeight/4,otherWallLength*.5f));
     windowWall3Lower = new ModelMultipleLights(name, mesh, modelMatrix, shader, material, lights, camera, textures.get("silver_diff"), textures.get("pure_spec"));
@@ -120,4 +120,34 @@ public class Walls {
     windowWall3Upper.render(gl);
     windowWall3Lower.render(gl);
   }
+
+  /**
+   * Method for adding the walls to a render queue
+   * @param queue RenderQueue for the frame
+   */
+  public void render(RenderQueue queue) {
+    queue.add(tt1);
+    queue.add(rightWall);
+    queue.add(backWall);
+    queue.add(ceiling);
+    queue.add(windowWall1);
+    queue.add(windowWall2);
+    queue.add(windowWall3Upper);
+    queue.add(windowWall3Lower);
+  }
+
+  /**
+   * Method for adding the walls to a bounding volume hierarchy, which then culls and draws them
+   * @param bvh DynamicBVH for the scene
+   */
+  public void addTo(DynamicBVH bvh) {
+    bvh.insert(tt1);
+    bvh.insert(rightWall);
+    bvh.insert(backWall);
+    bvh.insert(ceiling);
+    bvh.insert(windowWall1);
+    bvh.insert(windowWall2);
+    bvh.insert(windowWall3Upper);
+    bvh.insert(windowWall3Lower);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,233 @@
+import gmaths.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Micro-benchmarks for the gmaths package, in a harness that only needs javac. The JMH benchmarks in
+ * benchmarks/jmh cover the same operations and are the reference (benchmarks/baseline.txt is a JMH run).
+ *
+ * Run from the project root (after compiling gmaths):
+ *   javac -d benchmarks benchmarks/*.java
+ *   java -cp .:benchmarks GmathsBenchmark [name filter]
+ * The number of warmup and measurement iterations and the length of an iteration in ms can be set with
+ * -Dbench.warmup, -Dbench.iterations and -Dbench.time. The vector kernels are slow to warm up, so keep
+ * plenty of warmup when comparing them.
+ *
+ * Each benchmark is warmed up and then timed over several measurement iterations, in the style of JMH.
+ * Mat4Batch uses its vector kernels if they are compiled and --add-modules jdk.incubator.vector is given.
+ * As well as the time per operation it reports the bytes allocated per operation, read from the
+ * thread allocation counter, which should match gc.alloc.rate.norm from JMH's -prof gc.
+ * Results are printed as a table.
+ */
+public class GmathsBenchmark {
+
+  // The equivalents of JMH's -wi, -i and -r
+  private static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 20);
+  private static final int MEASURE_ITERATIONS = Integer.getInteger("bench.iterations", 5);
+  private static final long ITERATION_NANOS = Integer.getInteger("bench.time", 200)*1_000_000L;
+
+  /**
+   * One benchmark. run(n) performs the operation n times and returns a value derived from the results,
+   * which is consumed so that the JIT cannot remove the work.
+   */
+  interface Bench {
+    float run(int n);
+  }
+
+  private static final class Entry {
+    final String name;
+    final Bench bench;
+    Entry(String name, Bench bench) {
+      this.name = name;
+      this.bench = bench;
+    }
+  }
+
+  private static final List<Entry> benchmarks = new ArrayList<Entry>();
+  private static volatile float sink;
+
+  private static void add(String name, Bench bench) {
+    benchmarks.add(new Entry(name, bench));
+  }
+
+  // ***************************************************
+  /* THE DATA
+   */
+
+  private static Mat4 a = Mat4Transform.rotateAroundY(30);
+  private static Mat4 b = Mat4.multiply(Mat4Transform.translate(1,2,3), Mat4Transform.scale(2,3,4));
+  private static Mat4 general = Mat4Transform.perspective(45, 1.33f);
+  private static Mat4 dest = new Mat4(1);
+  private static Mat4 rigid = Mat4.multiply(Mat4Transform.translate(1,2,3), Mat4Transform.rotateAroundX(25));
+  private static float[] glsl = new float[16];
+  private static FloatBuffer buffer = ByteBuffer.allocateDirect(16*Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+  private static Vec3 from = new Vec3(4,6,15), to = new Vec3(0,0,0), up = new Vec3(0,1,0);
+  private static Vec3 v = new Vec3(1,2,3), w = new Vec3(-2,0.5f,4);
+  private static Vec3 scale = new Vec3(1.5f,1.5f,1.5f);
+  private static Quat q1 = new Quat(), q2 = new Quat(), q3 = new Quat();
+  private static float[] sinCos = new float[2];
+  private static AABB box = new AABB(-1,-1,-1,1,1,1), boxOut = new AABB();
+  private static Frustum frustum = new Frustum(Mat4.multiply(general, Mat4Transform.lookAt(from, to, up)));
+
+  private static final int BATCH = 1024;
+  private static float[] batchA = new float[BATCH*16], batchB = new float[BATCH*16], batchOut = new float[BATCH*16];
+  private static float[] points = new float[BATCH*3];
+  private static Vec3Array positions = new Vec3Array(BATCH), targets = new Vec3Array(BATCH);
+
+  static {
+    q1.setAroundY(30);
+    q2.setAroundX(-70);
+    for (int i=0; i<BATCH; ++i) {
+      a.storeRowMajor(batchA, i*16);
+      b.storeRowMajor(batchB, i*16);
+      points[i*3] = i; points[i*3+1] = -i; points[i*3+2] = 0.5f*i;
+      positions.set(i, i, 0, -i);
+      targets.set(i, -i, 1, i);
+    }
+  }
+
+  // ***************************************************
+  /* THE BENCHMARKS
+   * Methods that return a new object pass it to consume(), so that the allocation really happens,
+   * as it does when the result is kept by the scene code.
+   */
+
+  private static void defineBenchmarks() {
+    add("Mat4.multiply", n -> { for (int i=0; i<n; ++i) consume(Mat4.multiply(a, b)); return 0; });
+    add("Mat4.multiplyInto(affine)", n -> { for (int i=0; i<n; ++i) Mat4.multiplyInto(a, b, dest); return dest.get(0,3); });
+    add("Mat4.multiplyInto(general)", n -> { for (int i=0; i<n; ++i) Mat4.multiplyInto(general, b, dest); return dest.get(3,2); });
+    add("Mat4.multiplyAffineInto", n -> { for (int i=0; i<n; ++i) Mat4.multiplyAffineInto(a, b, dest); return dest.get(0,3); });
+    add("Mat4.mulLocal", n -> { dest.set(a); for (int i=0; i<n; ++i) dest.mulLocal(a); return dest.get(0,0); });
+    add("Mat4.inverse(general)", n -> { for (int i=0; i<n; ++i) consume(Mat4.inverse(general)); return 0; });
+    add("Mat4.inverse(affine)", n -> { for (int i=0; i<n; ++i) consume(Mat4.inverse(b)); return 0; });
+    add("Mat4.inverseAffine", n -> { for (int i=0; i<n; ++i) Mat4.inverseAffine(b, dest); return dest.get(0,3); });
+    add("Mat4.inverseRigid", n -> { for (int i=0; i<n; ++i) Mat4.inverseRigid(rigid, dest); return dest.get(0,3); });
+    add("Mat4.normalMatrix(uniform scale)", n -> { for (int i=0; i<n; ++i) Mat4.normalMatrix(rigid, dest); return dest.get(0,0); });
+    add("Mat4.normalMatrix(general)", n -> { for (int i=0; i<n; ++i) Mat4.normalMatrix(b, dest); return dest.get(0,0); });
+    add("Mat4.transpose", n -> { for (int i=0; i<n; ++i) consume(Mat4.transpose(b)); return 0; });
+    add("Mat4.toFloatArrayForGLSL", n -> { for (int i=0; i<n; ++i) consume(b.toFloatArrayForGLSL()); return 0; });
+    add("Mat4.storeColumnMajor", n -> { for (int i=0; i<n; ++i) b.storeColumnMajor(glsl, 0); return glsl[12]; });
+    add("Mat4.store(FloatBuffer)", n -> { for (int i=0; i<n; ++i) b.store(buffer); return buffer.get(12); });
+
+    add("Mat4Transform.translate", n -> { for (int i=0; i<n; ++i) consume(Mat4Transform.translate(i,2,3)); return 0; });
+    add("Mat4Transform.translate(into)", n -> { for (int i=0; i<n; ++i) Mat4Transform.translate(i,2,3, dest); return dest.get(0,3); });
+    add("Mat4Transform.scale", n -> { for (int i=0; i<n; ++i) consume(Mat4Transform.scale(i,2,3)); return 0; });
+    add("Mat4Transform.rotateAroundY", n -> { for (int i=0; i<n; ++i) consume(Mat4Transform.rotateAroundY(i)); return 0; });
+    add("Mat4Transform.rotateAroundY(into)", n -> { float s = 0; for (int i=0; i<n; ++i) { Mat4Transform.rotateAroundY(i, dest); s += dest.get(0,0); } return s; });
+    add("Mat4Transform.composeTRS(Mat4)", n -> { for (int i=0; i<n; ++i) Mat4Transform.composeTRS(v, a, scale, dest); return dest.get(0,0); });
+    add("Mat4Transform.composeTRS(Quat)", n -> { for (int i=0; i<n; ++i) Mat4Transform.composeTRS(v, q1, scale, dest); return dest.get(0,0); });
+    add("Mat4Transform.perspective", n -> { for (int i=0; i<n; ++i) consume(Mat4Transform.perspective(45, 1+(i&7))); return 0; });
+    add("Mat4Transform.lookAt", n -> { for (int i=0; i<n; ++i) consume(Mat4Transform.lookAt(from, to, up)); return 0; });
+    add("Mat4Transform.lookAt(into)", n -> { for (int i=0; i<n; ++i) Mat4Transform.lookAt(from, to, up, dest); return dest.get(0,3); });
+
+    add("Vec3.normalize(static)", n -> { for (int i=0; i<n; ++i) consume(Vec3.normalize(v)); return 0; });
+    add("Vec3.normalize", n -> { float s = 0; Vec3 t = new Vec3(); for (int i=0; i<n; ++i) { t.x = v.x; t.y = v.y+(i&255); t.z = v.z; t.normalize(); s += t.y; } return s; });
+    add("Vec3.crossProduct", n -> { for (int i=0; i<n; ++i) consume(Vec3.crossProduct(v, w)); return 0; });
+    add("Vec3.add(static)", n -> { for (int i=0; i<n; ++i) consume(Vec3.add(v, w)); return 0; });
+
+    add("Math.sin+Math.cos", n -> { float s = 0; for (int i=0; i<n; ++i) { double x = (i&1023)*0.01; s += (float)Math.sin(x) + (float)Math.cos(x); } return s; });
+    add("Trig.sinCos(EXACT)", n -> { Trig.setMode(Trig.Mode.EXACT); float s = 0; for (int i=0; i<n; ++i) { Trig.sinCos((i&1023)*0.01, sinCos); s += sinCos[0] + sinCos[1]; } return s; });
+    add("Trig.sinCos(POLYNOMIAL)", n -> { Trig.setMode(Trig.Mode.POLYNOMIAL); float s = 0; for (int i=0; i<n; ++i) { Trig.sinCos((i&1023)*0.01, sinCos); s += sinCos[0] + sinCos[1]; } Trig.setMode(Trig.Mode.EXACT); return s; });
+    add("Mat4Transform.rotateAroundY(POLYNOMIAL)", n -> { Trig.setMode(Trig.Mode.POLYNOMIAL); float s = 0; for (int i=0; i<n; ++i) { Mat4Transform.rotateAroundY(i, dest); s += dest.get(0,0); } Trig.setMode(Trig.Mode.EXACT); return s; });
+
+    add("Quat.multiplyInto", n -> { for (int i=0; i<n; ++i) Quat.multiplyInto(q1, q2, q3); return q3.w; });
+    add("Quat.slerp", n -> { for (int i=0; i<n; ++i) Quat.slerp(q1, q2, (i&255)/255f, q3); return q3.w; });
+    add("Quat.nlerp", n -> { for (int i=0; i<n; ++i) Quat.nlerp(q1, q2, (i&255)/255f, q3); return q3.w; });
+    add("Quat.toMat4(into)", n -> { for (int i=0; i<n; ++i) q1.toMat4(dest); return dest.get(0,0); });
+
+    add("AABB.transform", n -> { for (int i=0; i<n; ++i) AABB.transform(box, b, boxOut); return boxOut.max.x; });
+    add("Frustum.set", n -> { for (int i=0; i<n; ++i) frustum.set(general); return frustum.distance(0, 0, 0, 0); });
+    add("Frustum.intersects(AABB)", n -> { int c = 0; for (int i=0; i<n; ++i) { box.min.x = -(i&63); if (frustum.intersects(box)) c++; } return c; });
+    add("Frustum.classify(AABB)", n -> { int c = 0; for (int i=0; i<n; ++i) { box.min.x = -(i&63); c += frustum.classify(box); } return c; });
+    add("Frustum.intersects(sphere)", n -> { int c = 0; for (int i=0; i<n; ++i) { if (frustum.intersects(i&63, 0, -5, 1)) c++; } return c; });
+
+    add("Mat4Batch.multiply(x1024)", n -> { for (int i=0; i<n; ++i) Mat4Batch.multiply(batchA, batchB, batchOut, BATCH); return batchOut[3]; });
+    add("Mat4Batch.transformPoints(x1024)", n -> { for (int i=0; i<n; ++i) Mat4Batch.transformPoints(a, points, BATCH); return points[0]; });
+    add("Vec3Array.lerp(x1024)", n -> { for (int i=0; i<n; ++i) Vec3Array.lerp(positions, targets, 0.01f, positions); return positions.x[0]; });
+    add("Vec3Array.transformPoints(x1024)", n -> { for (int i=0; i<n; ++i) positions.transformPoints(a); return positions.x[0]; });
+  }
+
+  // ***************************************************
+  /* THE HARNESS
+   */
+
+  private static Object escape;
+
+  /**
+   * Makes o escape, so that the JIT cannot remove its allocation.
+   */
+  private static void consume(Object o) {
+    escape = o;
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Runs the benchmark repeatedly for ITERATION_NANOS. The batch size passed to run() starts at 1 and
+   * doubles while a call takes less than a millisecond, so slow and fast operations both get a useful
+   * number of calls and the cost of the call itself is spread over many operations.
+   * @return {ns per op, bytes per op}
+   */
+  private static double[] iteration(Bench bench) {
+    long ops = 0;
+    int batch = 1;
+    long alloc0 = allocatedBytes();
+    long start = System.nanoTime(), now = start;
+    while (now-start < ITERATION_NANOS) {
+      long t0 = now;
+      sink += bench.run(batch);
+      now = System.nanoTime();
+      ops += batch;
+      if (now-t0 < 1_000_000L && batch < (1<<24)) batch *= 2;
+    }
+    long bytes = allocatedBytes()-alloc0;
+    return new double[] { (double)(now-start)/ops, (double)bytes/ops };
+  }
+
+  /**
+   * Runs the warmup and measurement iterations.
+   * @return {ns per op, error of ns per op (half the min-max range), bytes per op}
+   */
+  static double[] measure(Bench bench) {
+    for (int i=0; i<WARMUP_ITERATIONS; ++i) {
+      iteration(bench);
+    }
+    double min = Double.MAX_VALUE, max = 0, total = 0, bytes = 0;
+    for (int i=0; i<MEASURE_ITERATIONS; ++i) {
+      double[] r = iteration(bench);
+      min = Math.min(min, r[0]);
+      max = Math.max(max, r[0]);
+      total += r[0];
+      bytes += r[1];
+    }
+    return new double[] { total/MEASURE_ITERATIONS, (max-min)/2, bytes/MEASURE_ITERATIONS };
+  }
+
+  static void printHeader() {
+    System.out.println("# JVM: "+System.getProperty("java.vm.name")+" "+System.getProperty("java.version"));
+    System.out.println("# Mat4Batch vector kernels: "+Mat4Batch.isUsingVector());
+    System.out.println("# "+WARMUP_ITERATIONS+" warmup, "+MEASURE_ITERATIONS+" measurement iterations of ~"+(ITERATION_NANOS/1_000_000)+" ms");
+    System.out.println(String.format("%-52s %12s %10s %12s", "Benchmark", "ns/op", "error", "B/op"));
+  }
+
+  static void run(String name, Bench bench) {
+    double[] r = measure(bench);
+    System.out.println(String.format("%-52s %12.3f %10.3f %12.1f", name, r[0], r[1], r[2]));
+  }
+
+  public static void main(String[] args) {
+    String filter = (args.length > 0) ? args[0] : "";
+    defineBenchmarks();
+    printHeader();
+    for (Entry e : benchmarks) {
+      if (e.name.contains(filter)) run(e.name, e.bench);
+    }
+  }
+
+}
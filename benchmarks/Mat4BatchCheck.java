@@ -0,0 +1,118 @@
+import gmaths.*;
+import java.util.Random;
+
+/**
+ * Checks the Mat4Batch kernels, scalar and (if loaded) vector, against Mat4 itself:
+ *   multiply           each product against Mat4.multiply of the same two matrices
+ *   transformPoints    each point against Mat4.multiply of m and a matrix holding (x,y,z,1) in column 0
+ *   transformNormals   as transformPoints, with (x,y,z,0)
+ * The kernels sum in the same order as Mat4, so the results must be identical. The matrices are random,
+ * half of them affine, and the counts are not multiples of any vector length, so the loops that finish
+ * off the last few are covered too. Prints the number of values that differ and exits with status 1 if
+ * any do.
+ *
+ * Run from the project root (after compiling gmaths, and gmaths/vector for the vector kernels):
+ *   javac -d benchmarks benchmarks/*.java
+ *   java --add-modules jdk.incubator.vector -cp .:benchmarks Mat4BatchCheck
+ */
+public class Mat4BatchCheck {
+
+  private static final int MATRICES = 4099;
+  private static final int POINTS = 3001;
+
+  private static final Random random = new Random(6);
+
+  public static void main(String[] args) {
+    boolean ok = true;
+    for (boolean vector : new boolean[] {false, true}) {
+      if (Mat4Batch.useVector(vector) != vector) {
+        System.out.println("vector kernels not loaded (compile gmaths/vector and add jdk.incubator.vector)");
+        continue;
+      }
+      System.out.println(vector ? "vector" : "scalar");
+      ok &= checkMultiply();
+      ok &= checkTransform(true);
+      ok &= checkTransform(false);
+    }
+    System.out.println(ok ? "PASS" : "FAIL");
+    if (!ok) System.exit(1);
+  }
+
+  private static boolean checkMultiply() {
+    float[] a = new float[MATRICES*16], b = new float[MATRICES*16], out = new float[MATRICES*16];
+    Mat4[] ma = new Mat4[MATRICES], mb = new Mat4[MATRICES];
+    for (int i=0; i<MATRICES; ++i) {
+      ma[i] = randomMatrix(i%2 == 0);
+      mb[i] = randomMatrix(i%3 != 0);
+      ma[i].storeRowMajor(a, i*16);
+      mb[i].storeRowMajor(b, i*16);
+    }
+    Mat4Batch.multiply(a, b, out, MATRICES);
+    int wrong = 0;
+    Mat4 result = new Mat4();
+    for (int i=0; i<MATRICES; ++i) {
+      result.loadRowMajor(out, i*16);
+      Mat4 expected = Mat4.multiply(ma[i], mb[i]);
+      for (int r=0; r<4; ++r) {
+        for (int c=0; c<4; ++c) {
+          if (result.get(r,c) != expected.get(r,c)) wrong++;
+        }
+      }
+    }
+    return report("  multiply, "+MATRICES+" matrices", wrong);
+  }
+
+  private static boolean checkTransform(boolean points) {
+    int wrong = 0;
+    for (int k=0; k<8; ++k) {
+      Mat4 m = randomMatrix(k%2 == 0);
+      int count = POINTS-k;
+      float[] xyz = new float[count*3];
+      for (int i=0; i<xyz.length; ++i) {
+        xyz[i] = value();
+      }
+      float[] original = xyz.clone();
+      if (points) Mat4Batch.transformPoints(m, xyz, count);
+      else Mat4Batch.transformNormals(m, xyz, count);
+      Mat4 column = new Mat4();
+      for (int i=0; i<count; ++i) {
+        column.set(0,0, original[i*3]);
+        column.set(1,0, original[i*3+1]);
+        column.set(2,0, original[i*3+2]);
+        column.set(3,0, points ? 1 : 0);
+        Mat4 expected = Mat4.multiply(m, column);
+        for (int j=0; j<3; ++j) {
+          if (xyz[i*3+j] != expected.get(j,0)) wrong++;
+        }
+      }
+    }
+    return report(points ? "  transformPoints, "+(POINTS-7)+" to "+POINTS+" points"
+                         : "  transformNormals, "+(POINTS-7)+" to "+POINTS+" normals", wrong);
+  }
+
+  private static boolean report(String name, int wrong) {
+    System.out.println(String.format("%-44s %d values differ %s", name, wrong, wrong == 0 ? "" : "FAIL"));
+    return wrong == 0;
+  }
+
+  private static Mat4 randomMatrix(boolean affine) {
+    Mat4 m = new Mat4();
+    for (int r=0; r<4; ++r) {
+      for (int c=0; c<4; ++c) {
+        m.set(r,c, value());
+      }
+    }
+    if (affine) {
+      m.set(3,0, 0);
+      m.set(3,1, 0);
+      m.set(3,2, 0);
+      m.set(3,3, 1);
+    }
+    return m;
+  }
+
+  private static float value() {
+    return (random.nextFloat()-0.5f)*20;
+  }
+
+}
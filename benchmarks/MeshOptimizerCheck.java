@@ -0,0 +1,82 @@
+import java.util.*;
+
+/**
+ * Checks MeshOptimizer on each Sphere level, on Cube, and on the full sphere with its triangles shuffled, as
+ * a loaded mesh might arrive. Prints the average cache miss ratio (ACMR) of each with first in, first out
+ * caches of 16 and 32 vertices, before and after optimising, and the time to optimise. Exits with status 1
+ * if the optimised mesh draws different triangles (by vertex contents and winding), or has a worse ACMR with
+ * either cache.
+ *
+ * Run from the project root:
+ *   javac -d benchmarks benchmarks/*.java
+ *   java -cp .:benchmarks MeshOptimizerCheck
+ */
+public class MeshOptimizerCheck {
+
+  private static final int STRIDE = 8;
+
+  public static void main(String[] args) {
+    boolean ok = true;
+    System.out.println(String.format("%-22s %9s %6s  %-15s %-15s %s", "", "triangles", "ideal", "ACMR 16", "ACMR 32", "time"));
+    for (int level=0; level<Sphere.LEVELS.length; ++level) {
+      int n = Sphere.LEVELS[level], ylat = (level == 0) ? 30 : n;
+      ok &= check("Sphere lod "+level, Sphere.createVertices(n, ylat), Sphere.createIndices(n, ylat));
+    }
+    ok &= check("Cube", Cube.vertices.clone(), Cube.indices.clone());
+    int[] shuffled = Sphere.createIndices(30, 30);
+    Random random = new Random(1);
+    for (int t=shuffled.length/3-1; t>0; --t) {
+      int u = random.nextInt(t+1);
+      for (int k=0; k<3; ++k) {
+        int swap = shuffled[t*3+k];
+        shuffled[t*3+k] = shuffled[u*3+k];
+        shuffled[u*3+k] = swap;
+      }
+    }
+    ok &= check("Sphere, shuffled", Sphere.createVertices(30, 30), shuffled);
+    System.out.println(ok ? "PASS" : "FAIL");
+    if (!ok) System.exit(1);
+  }
+
+  private static boolean check(String name, float[] vertices, int[] indices) {
+    float[] v = vertices.clone();
+    int[] i = indices.clone();
+    long time = System.nanoTime();
+    MeshOptimizer.optimize(v, i, STRIDE);
+    time = System.nanoTime()-time;
+    float before16 = MeshOptimizer.acmr(indices, 16), after16 = MeshOptimizer.acmr(i, 16);
+    float before32 = MeshOptimizer.acmr(indices, 32), after32 = MeshOptimizer.acmr(i, 32);
+    boolean same = triangles(vertices, indices).equals(triangles(v, i)) && sorted(vertices).equals(sorted(v));
+    boolean ok = same && after16 <= before16 && after32 <= before32;
+    System.out.println(String.format("%-22s %9d %6.3f  %.3f -> %.3f  %.3f -> %.3f  %.2f ms %s", name, indices.length/3,
+                       vertices.length/(float)STRIDE/(indices.length/3), before16, after16, before32, after32, time/1e6,
+                       same ? (ok ? "" : "WORSE") : "DIFFERENT TRIANGLES"));
+    return ok;
+  }
+
+  // the triangles as a count of each, written with the vertex contents starting from the smallest, keeping the winding
+  private static Map<String,Integer> triangles(float[] vertices, int[] indices) {
+    HashMap<String,Integer> triangles = new HashMap<String,Integer>();
+    for (int t=0; t<indices.length; t+=3) {
+      String[] corner = new String[3];
+      int first = 0;
+      for (int k=0; k<3; ++k) {
+        corner[k] = Arrays.toString(Arrays.copyOfRange(vertices, indices[t+k]*STRIDE, indices[t+k]*STRIDE+STRIDE));
+        if (corner[k].compareTo(corner[first]) < 0) first = k;
+      }
+      String key = corner[first]+corner[(first+1)%3]+corner[(first+2)%3];
+      triangles.merge(key, 1, Integer::sum);
+    }
+    return triangles;
+  }
+
+  private static List<String> sorted(float[] vertices) {
+    ArrayList<String> list = new ArrayList<String>();
+    for (int v=0; v<vertices.length; v+=STRIDE) {
+      list.add(Arrays.toString(Arrays.copyOfRange(vertices, v, v+STRIDE)));
+    }
+    Collections.sort(list);
+    return list;
+  }
+
+}
@@ -0,0 +1,104 @@
+import gmaths.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Checks SceneOptimizer.foldStaticTransforms on both robots. Each robot's graph is built from its scene file twice,
+ * and one copy is folded. Then both copies are given the same random transforms on their dynamic nodes, frame
+ * after frame. Every model's world transform must match between the copies to within float rounding.
+ * Prints the TransformNodes before and after folding, and exits with status 1 if any model differs by
+ * more than TOLERANCE (relative to the size of the value). The update times printed after are for reference:
+ * folding removes matrix multiplies, but for robot1 the difference is within the noise of the measurement.
+ *
+ * The graphs are built by SceneFile.buildGraph, without models, so no window or GL context is needed.
+ * Run from the project root:
+ *   javac -d benchmarks benchmarks/*.java
+ *   java -cp .:benchmarks:<jogl jars> SceneFoldCheck
+ */
+public class SceneFoldCheck {
+
+  private static final float TOLERANCE = 1e-5f;
+  private static final int FRAMES = 10000;
+
+  public static void main(String[] args) {
+    boolean ok = true;
+    for (String path : new String[] {"assets/scenes/robot1.json", "assets/scenes/robot2.json"}) {
+      ok &= check(path);
+    }
+    System.out.println(ok ? "PASS" : "FAIL");
+    if (!ok) System.exit(1);
+  }
+
+  private static boolean check(String path) {
+    SceneFile scene = SceneFile.load(path);
+    SGNode plain = scene.buildGraph();
+    SGNode folded = scene.buildGraph();
+    int before = SceneOptimizer.countTransforms(folded);
+    int removed = SceneOptimizer.foldStaticTransforms(folded);
+    folded.update();
+
+    ArrayList<ModelNode> plainModels = new ArrayList<ModelNode>(), foldedModels = new ArrayList<ModelNode>();
+    ArrayList<TransformNode> plainJoints = new ArrayList<TransformNode>(), foldedJoints = new ArrayList<TransformNode>();
+    collect(plain, plainModels, plainJoints);
+    collect(folded, foldedModels, foldedJoints);
+    System.out.println(path+": "+before+" TransformNodes, "+removed+" folded, "+SceneOptimizer.countTransforms(folded)+" left; "
+                       +plainJoints.size()+" dynamic, "+plainModels.size()+" models");
+    if (plainModels.size() != foldedModels.size() || plainJoints.size() != foldedJoints.size()) {
+      System.out.println("  the folded graph has different models or dynamic nodes");
+      return false;
+    }
+
+    Random random = new Random(1);
+    Mat4 m = new Mat4(1);
+    float maxError = 0;
+    for (int frame=0; frame<=FRAMES; ++frame) {
+      if (frame > 0) {
+        for (int j=0; j<plainJoints.size(); ++j) {
+          if (random.nextInt(3) == 0) continue;  // leave some joints unchanged, so clean branches are tested too
+          m = Mat4.multiply(Mat4Transform.rotateAroundY(random.nextFloat()*360), Mat4Transform.rotateAroundX(random.nextFloat()*360));
+          m = Mat4.multiply(Mat4Transform.translate(random.nextFloat()*4-2, random.nextFloat()*4-2, random.nextFloat()*4-2), m);
+          plainJoints.get(j).setTransform(m);
+          foldedJoints.get(j).setTransform(m);
+        }
+        plain.update();
+        folded.update();
+      }
+      for (int i=0; i<plainModels.size(); ++i) {
+        maxError = Math.max(maxError, error(plainModels.get(i).worldTransform, foldedModels.get(i).worldTransform));
+      }
+    }
+    System.out.println("  max relative error over "+FRAMES+" frames: "+maxError);
+
+    GmathsBenchmark.printHeader();
+    GmathsBenchmark.run("update, all dynamic nodes moved (unfolded)", n -> { for (int i=0; i<n; ++i) { move(plainJoints, i); plain.update(); } return 0; });
+    GmathsBenchmark.run("update, all dynamic nodes moved (folded)", n -> { for (int i=0; i<n; ++i) { move(foldedJoints, i); folded.update(); } return 0; });
+    return maxError <= TOLERANCE;
+  }
+
+  private static final Mat4[] MOVES = { Mat4Transform.rotateAroundZ(10), Mat4Transform.rotateAroundZ(20) };
+
+  private static void move(ArrayList<TransformNode> joints, int i) {
+    for (int j=0; j<joints.size(); ++j) {
+      joints.get(j).setTransform(MOVES[i&1]);
+    }
+  }
+
+  private static void collect(SGNode node, ArrayList<ModelNode> models, ArrayList<TransformNode> joints) {
+    if (node instanceof ModelNode) models.add((ModelNode)node);
+    if (node instanceof TransformNode && ((TransformNode)node).isDynamic()) joints.add((TransformNode)node);
+    for (int i=0; i<node.children.size(); ++i) {
+      collect(node.children.get(i), models, joints);
+    }
+  }
+
+  private static float error(Mat4 a, Mat4 b) {
+    float max = 0;
+    for (int i=0; i<4; ++i) {
+      for (int j=0; j<4; ++j) {
+        max = Math.max(max, Math.abs(a.get(i,j)-b.get(i,j))/Math.max(1, Math.abs(a.get(i,j))));
+      }
+    }
+    return max;
+  }
+
+}
@@ -0,0 +1,73 @@
+import gmaths.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares updating scene graphs through the SGNode tree with updating a CompiledSceneGraph of the same
+ * nodes. Each robot is a random tree of 48 nodes, about two thirds of them TransformNodes; before every
+ * update either one joint per robot or all of them are set to a new (precalculated) matrix.
+ * Uses the GmathsBenchmark harness.
+ *
+ * Needs the scene graph classes and JOGL on the class path, e.g. from the project root:
+ *   javac -d benchmarks benchmarks/*.java
+ *   java -cp .:benchmarks:<jogl jars> SceneGraphBenchmark
+ */
+public class SceneGraphBenchmark {
+
+  private static final int NODES = 48;
+
+  private static NameNode root;
+  private static ArrayList<TransformNode> joints = new ArrayList<TransformNode>();
+  private static Mat4[] jointTransforms = { Mat4Transform.rotateAroundZ(10), Mat4Transform.rotateAroundZ(20) };
+
+  private static void build(int robots) {
+    Random random = new Random(1);
+    root = new NameNode("root");
+    joints.clear();
+    for (int r=0; r<robots; ++r) {
+      ArrayList<SGNode> nodes = new ArrayList<SGNode>();
+      TransformNode robot = new TransformNode("robot"+r, Mat4Transform.translate(r, 0, 0));
+      root.addChild(robot);
+      nodes.add(robot);
+      for (int i=1; i<NODES; ++i) {
+        SGNode parent = nodes.get(random.nextInt(nodes.size()));
+        SGNode child;
+        if (random.nextInt(3) > 0) {
+          TransformNode t = new TransformNode("joint"+i, Mat4Transform.rotateAroundY(random.nextFloat()*90));
+          joints.add(t);
+          child = t;
+        }
+        else {
+          child = new NameNode("name"+i);
+        }
+        parent.addChild(child);
+        nodes.add(child);
+      }
+    }
+    root.update();
+  }
+
+  private static void moveJoints(int i, boolean all) {
+    int perRobot = joints.size()/Math.max(1, root.children.size());
+    for (int j=0; j<joints.size(); ++j) {
+      if (all || j%perRobot == 0) {
+        joints.get(j).setTransform(jointTransforms[i&1]);
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    GmathsBenchmark.printHeader();
+    for (int robots : new int[] {1, 100}) {
+      for (boolean all : new boolean[] {false, true}) {
+        String suffix = "("+robots+" robots, "+(all ? "all joints" : "1 joint each")+")";
+        build(robots);
+        GmathsBenchmark.run("SGNode.update"+suffix, n -> { for (int i=0; i<n; ++i) { moveJoints(i, all); root.update(); } return 0; });
+        build(robots);
+        CompiledSceneGraph compiled = new CompiledSceneGraph(root);
+        GmathsBenchmark.run("CompiledSceneGraph.update"+suffix, n -> { for (int i=0; i<n; ++i) { moveJoints(i, all); compiled.update(); } return 0; });
+      }
+    }
+  }
+
+}
@@ -0,0 +1,78 @@
+import gmaths.*;
+
+/**
+ * Checks the accuracy of gmaths.Trig in each mode against Math.sin and Math.cos, and of the rotation
+ * builders that use it. Prints the max absolute error of each and exits with status 1 if the
+ * POLYNOMIAL mode is outside Trig.MAX_POLYNOMIAL_ERROR, or if the EXACT mode is not Math rounded
+ * to float (at most half a float ulp, and the rotation matrices identical to using Math).
+ *
+ * Run from the project root (after compiling gmaths):
+ *   javac -d benchmarks benchmarks/*.java
+ *   java -cp .:benchmarks TrigAccuracy
+ */
+public class TrigAccuracy {
+
+  private static final int SAMPLES = 2_000_000;
+
+  public static void main(String[] args) {
+    boolean ok = true;
+    for (Trig.Mode mode : Trig.Mode.values()) {
+      Trig.setMode(mode);
+      boolean exact = (mode == Trig.Mode.EXACT);
+      float limit = exact ? Math.ulp(1.0f)/2 : Trig.MAX_POLYNOMIAL_ERROR;
+      System.out.println(mode);
+      ok &= check("  sin/cos/sinCos, [-2pi,2pi]", 2*Math.PI, limit);
+      ok &= check("  sin/cos/sinCos, [-1e4,1e4]", 1e4, limit);
+      ok &= checkRotations(exact ? 0 : limit);
+    }
+    Trig.setMode(Trig.Mode.EXACT);
+    System.out.println(ok ? "PASS" : "FAIL");
+    if (!ok) System.exit(1);
+  }
+
+  private static boolean check(String name, double range, float limit) {
+    float[] sc = new float[2];
+    double max = 0, worst = 0;
+    for (int i=0; i<=SAMPLES; ++i) {
+      double a = -range + 2*range*i/SAMPLES;
+      Trig.sinCos(a, sc);
+      double e = Math.max(Math.abs(Trig.sin(a)-Math.sin(a)), Math.abs(Trig.cos(a)-Math.cos(a)));
+      e = Math.max(e, Math.max(Math.abs(sc[0]-Math.sin(a)), Math.abs(sc[1]-Math.cos(a))));
+      e = Math.max(e, Math.max(Math.abs(sc[0]-Trig.sin(a)), Math.abs(sc[1]-Trig.cos(a))));
+      if (e > max) {
+        max = e;
+        worst = a;
+      }
+    }
+    return report(name, max, worst, limit);
+  }
+
+  // compares the rotation builders against the same matrices built directly with Math
+  private static boolean checkRotations(float limit) {
+    Mat4 m = new Mat4();
+    double max = 0, worst = 0;
+    for (int i=0; i<=SAMPLES/100; ++i) {
+      float deg = -720 + 1440f*i/(SAMPLES/100);
+      double rad = (float)(deg*Math.PI/180.0);
+      float c = (float)Math.cos(rad), s = (float)Math.sin(rad);
+      Mat4Transform.rotateAroundX(deg, m);
+      double e = Math.max(Math.abs(m.get(1,1)-c), Math.abs(m.get(2,1)-s));
+      Mat4Transform.rotateAroundY(deg, m);
+      e = Math.max(e, Math.max(Math.abs(m.get(0,0)-c), Math.abs(m.get(0,2)-s)));
+      Mat4Transform.rotateAroundZ(deg, m);
+      e = Math.max(e, Math.max(Math.abs(m.get(0,0)-c), Math.abs(m.get(1,0)-s)));
+      if (e > max) {
+        max = e;
+        worst = deg;
+      }
+    }
+    return report("  rotateAroundX/Y/Z, [-720,720] degrees", max, worst, limit);
+  }
+
+  private static boolean report(String name, double max, double worst, float limit) {
+    boolean ok = max <= limit + 1e-9;
+    System.out.println(String.format("%-42s max error %.3e at %.6f (limit %.3e) %s", name, max, worst, limit, ok ? "" : "FAIL"));
+    return ok;
+  }
+
+}
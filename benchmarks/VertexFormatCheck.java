@@ -0,0 +1,123 @@
+import java.nio.*;
+
+/**
+ * Checks the VertexFormats against the float vertices of Sphere (each level of detail), Cube and TwoTriangles.
+ * Each mesh is packed in each format and read back the way OpenGL reads the attributes, and the max error of
+ * the positions, normals and texture coordinates is compared with what the format promises:
+ *   positions    exact, or half a step of a normalised short (QUANTISED)
+ *   normals      exact, or half a step of a normalised 10 bit value
+ *   tex coords   exact, or half a half float ulp of the value
+ * VertexFormat.halfFloat is also checked against every half float, and the halfway points between them.
+ * Prints the errors and the vertex buffer sizes, and exits with status 1 if anything is out.
+ *
+ * Run from the project root:
+ *   javac -d benchmarks benchmarks/*.java
+ *   java -cp .:benchmarks:<jogl jars> VertexFormatCheck
+ */
+public class VertexFormatCheck {
+
+  public static void main(String[] args) {
+    boolean ok = checkHalfFloat();
+    String[] names = {"Sphere", "Sphere lod 1", "Sphere lod 2", "Sphere lod 3", "Cube", "TwoTriangles"};
+    float[][] meshes = {Sphere.levelVertices(0), Sphere.levelVertices(1), Sphere.levelVertices(2), Sphere.levelVertices(3),
+                        Cube.vertices, TwoTriangles.vertices};
+    for (VertexFormat format : VertexFormat.values()) {
+      System.out.println(format+", "+format.getStride()+" bytes per vertex");
+      for (int i=0; i<meshes.length; ++i) {
+        ok &= check(names[i], meshes[i], format);
+      }
+    }
+    System.out.println(ok ? "PASS" : "FAIL");
+    if (!ok) System.exit(1);
+  }
+
+  private static boolean check(String name, float[] vertices, VertexFormat format) {
+    if (!format.canHold(vertices)) {
+      System.out.println(String.format("  %-14s positions out of range", name));
+      return true;
+    }
+    ByteBuffer b = format.pack(vertices);
+    int n = vertices.length/8;
+    boolean ok = b.remaining() == n*format.getStride();
+    float position = 0, normal = 0, texture = 0;
+    float positionLimit = format.getPositionError() + 1e-7f;
+    float normalLimit = (format == VertexFormat.FLOAT) ? 0 : 0.5f/511 + 1e-7f;
+    boolean textureOk = true;
+    float[] v = new float[8];
+    for (int i=0; i<n; ++i) {
+      read(b, i*format.getStride(), format, v);
+      for (int j=0; j<8; ++j) {
+        float e = Math.abs(v[j]-vertices[i*8+j]);
+        if (j < 3) position = Math.max(position, e);
+        else if (j < 6) normal = Math.max(normal, e);
+        else {
+          texture = Math.max(texture, e);
+          float limit = (format == VertexFormat.FLOAT) ? 0 : Math.max(Math.abs(vertices[i*8+j]), 0x1p-14f)*0x1p-11f;
+          textureOk &= e <= limit;
+        }
+      }
+    }
+    ok &= position <= positionLimit && normal <= normalLimit && textureOk;
+    System.out.println(String.format("  %-14s %6d bytes  position %.2e  normal %.2e  tex coord %.2e %s",
+                       name, b.remaining(), position, normal, texture, ok ? "" : "FAIL"));
+    return ok;
+  }
+
+  // reads vertex i back as OpenGL would, with normalised values converted as in OpenGL 4.2 and later
+  private static void read(ByteBuffer b, int at, VertexFormat format, float[] v) {
+    if (format == VertexFormat.FLOAT) {
+      for (int j=0; j<8; ++j) {
+        v[j] = b.getFloat(at+j*4);
+      }
+      return;
+    }
+    int next;
+    if (format == VertexFormat.QUANTISED) {
+      for (int j=0; j<3; ++j) {
+        v[j] = Math.max(b.getShort(at+j*2)/32767f, -1);
+      }
+      next = at+8;
+    }
+    else {
+      for (int j=0; j<3; ++j) {
+        v[j] = b.getFloat(at+j*4);
+      }
+      next = at+12;
+    }
+    int packed = b.getInt(next);
+    for (int j=0; j<3; ++j) {
+      int c = (packed << (22-10*j)) >> 22;  // sign extend the 10 bits
+      v[3+j] = Math.max(c/511f, -1);
+    }
+    v[6] = fromHalf(b.getShort(next+4));
+    v[7] = fromHalf(b.getShort(next+6));
+  }
+
+  private static float fromHalf(short h) {
+    int sign = (h & 0x8000) != 0 ? -1 : 1;
+    int exponent = (h >> 10) & 0x1f, mantissa = h & 0x3ff;
+    if (exponent == 0x1f) return mantissa == 0 ? sign*Float.POSITIVE_INFINITY : Float.NaN;
+    if (exponent == 0) return sign*mantissa*0x1p-24f;
+    return sign*(1 + mantissa/1024f)*(float)Math.pow(2, exponent-15);
+  }
+
+  // every finite half must come back as itself, and each halfway point must round to the even neighbour
+  private static boolean checkHalfFloat() {
+    int wrong = 0;
+    for (int h=0; h<0x10000; ++h) {
+      if ((h & 0x7c00) == 0x7c00) continue;
+      float f = fromHalf((short)h);
+      if ((VertexFormat.halfFloat(f) & 0xffff) != h && !(f == 0 && (h & 0x7fff) == 0)) wrong++;
+      if ((h & 0x7fff) == 0x7bff) continue;
+      float up = fromHalf((short)(h+1));
+      if (Math.signum(up) != Math.signum(f) && f != 0) continue;
+      float halfway = (float)(((double)f+up)/2);
+      int even = ((h & 1) == 0) ? h : h+1;
+      if ((VertexFormat.halfFloat(halfway) & 0xffff) != even) wrong++;
+    }
+    boolean ok = wrong == 0 && VertexFormat.halfFloat(1e6f) == 0x7c00 && VertexFormat.halfFloat(1e-9f) == 0;
+    System.out.println("halfFloat: "+wrong+" of the half floats and halfway points wrong "+(ok ? "" : "FAIL"));
+    return ok;
+  }
+
+}
@@ -0,0 +1,81 @@
+package gmaths.jmh;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Mat4Batch with each set of kernels, and Vec3Array, on 1024 matrices or points per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+  private static final int BATCH = 1024;
+
+  @Param({"scalar", "vector"})
+  private String kernels;
+
+  private Mat4 m = Mat4Transform.rotateAroundY(30);
+  private float[] a = new float[BATCH*16], b = new float[BATCH*16], out = new float[BATCH*16];
+  private float[] points = new float[BATCH*3];
+  private Vec3Array positions = new Vec3Array(BATCH), targets = new Vec3Array(BATCH);
+
+  @Setup
+  public void setUp() {
+    if (Mat4Batch.useVector(kernels.equals("vector")) != kernels.equals("vector")) {
+      throw new IllegalStateException("BatchBenchmark: the vector kernels did not load");
+    }
+    Mat4 t = Mat4.multiply(Mat4Transform.translate(1,2,3), Mat4Transform.scale(2,3,4));
+    for (int i=0; i<BATCH; ++i) {
+      m.storeRowMajor(a, i*16);
+      t.storeRowMajor(b, i*16);
+      positions.set(i, i, 0, -i);
+      targets.set(i, -i, 1, i);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void resetPoints() {
+    for (int i=0; i<BATCH; ++i) {
+      points[i*3] = i;
+      points[i*3+1] = -i;
+      points[i*3+2] = 0.5f*i;
+    }
+  }
+
+  @Benchmark
+  public float[] mat4BatchMultiply() {
+    Mat4Batch.multiply(a, b, out, BATCH);
+    return out;
+  }
+
+  @Benchmark
+  public float[] mat4BatchTransformPoints() {
+    Mat4Batch.transformPoints(m, points, BATCH);
+    return points;
+  }
+
+  @Benchmark
+  public float[] mat4BatchTransformNormals() {
+    Mat4Batch.transformNormals(m, points, BATCH);
+    return points;
+  }
+
+  @Benchmark
+  public Vec3Array vec3ArrayLerp() {
+    Vec3Array.lerp(positions, targets, 0.01f, positions);
+    return positions;
+  }
+
+  @Benchmark
+  public Vec3Array vec3ArrayTransformPoints() {
+    positions.transformPoints(m);
+    return positions;
+  }
+
+}
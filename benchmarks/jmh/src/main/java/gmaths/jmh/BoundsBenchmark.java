@@ -0,0 +1,64 @@
+package gmaths.jmh;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * AABB, BoundingSphere and Frustum: transforming bounds and testing them against the view.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class BoundsBenchmark {
+
+  private Mat4 projection = Mat4Transform.perspective(45, 1.33f);
+  private Mat4 b = Mat4.multiply(Mat4Transform.translate(1,2,3), Mat4Transform.scale(2,3,4));
+  private Mat4 viewProjection = Mat4.multiply(projection, Mat4Transform.lookAt(new Vec3(4,6,15), new Vec3(0,0,0), new Vec3(0,1,0)));
+  private AABB box = new AABB(-1,-1,-1,1,1,1), boxOut = new AABB();
+  private BoundingSphere sphere = new BoundingSphere(new Vec3(1,0,0), 1), sphereOut = new BoundingSphere();
+  private Frustum frustum = new Frustum(viewProjection);
+  private float x = 2;
+
+  @Benchmark
+  public AABB aabbTransform() {
+    AABB.transform(box, b, boxOut);
+    return boxOut;
+  }
+
+  @Benchmark
+  public BoundingSphere boundingSphereTransform() {
+    BoundingSphere.transform(sphere, b, sphereOut);
+    return sphereOut;
+  }
+
+  @Benchmark
+  public float maxStretch() {
+    return BoundingSphere.maxStretch(b);
+  }
+
+  @Benchmark
+  public Frustum frustumSet() {
+    frustum.set(viewProjection);
+    return frustum;
+  }
+
+  @Benchmark
+  public boolean frustumIntersectsAABB() {
+    return frustum.intersects(box);
+  }
+
+  @Benchmark
+  public int frustumClassifyAABB() {
+    return frustum.classify(box);
+  }
+
+  @Benchmark
+  public boolean frustumIntersectsSphere() {
+    return frustum.intersects(x, 0, -5, 1);
+  }
+
+}
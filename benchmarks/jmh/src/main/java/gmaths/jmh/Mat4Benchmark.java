@@ -0,0 +1,120 @@
+package gmaths.jmh;
+
+import gmaths.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Mat4: products, inverses and the GLSL upload paths.
+ * Methods returning a new matrix return it, so that JMH consumes it and the allocation really happens.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class Mat4Benchmark {
+
+  private Mat4 a = Mat4Transform.rotateAroundY(30);
+  private Mat4 b = Mat4.multiply(Mat4Transform.translate(1,2,3), Mat4Transform.scale(2,3,4));
+  private Mat4 general = Mat4Transform.perspective(45, 1.33f);
+  private Mat4 rigid = Mat4.multiply(Mat4Transform.translate(1,2,3), Mat4Transform.rotateAroundX(25));
+  private Mat4 dest = new Mat4(1);
+  private float[] glsl = new float[16];
+  private FloatBuffer buffer = ByteBuffer.allocateDirect(16*Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+  @Setup(Level.Iteration)
+  public void resetDest() {
+    dest.set(a);
+  }
+
+  @Benchmark
+  public Mat4 multiply() {
+    return Mat4.multiply(a, b);
+  }
+
+  @Benchmark
+  public Mat4 multiplyIntoAffine() {
+    Mat4.multiplyInto(a, b, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 multiplyIntoGeneral() {
+    Mat4.multiplyInto(general, b, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 multiplyAffineInto() {
+    Mat4.multiplyAffineInto(a, b, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 mulLocal() {
+    dest.mulLocal(a);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 inverseGeneral() {
+    return Mat4.inverse(general);
+  }
+
+  @Benchmark
+  public Mat4 inverseAffine() {
+    return Mat4.inverse(b);
+  }
+
+  @Benchmark
+  public Mat4 inverseAffineInto() {
+    Mat4.inverseAffine(b, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 inverseRigid() {
+    Mat4.inverseRigid(rigid, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 normalMatrixUniformScale() {
+    Mat4.normalMatrix(rigid, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 normalMatrixGeneral() {
+    Mat4.normalMatrix(b, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 transpose() {
+    return Mat4.transpose(b);
+  }
+
+  @Benchmark
+  public float[] toFloatArrayForGLSL() {
+    return b.toFloatArrayForGLSL();
+  }
+
+  @Benchmark
+  public float[] storeColumnMajor() {
+    b.storeColumnMajor(glsl, 0);
+    return glsl;
+  }
+
+  @Benchmark
+  public FloatBuffer storeFloatBuffer() {
+    b.store(buffer);
+    return buffer;
+  }
+
+}
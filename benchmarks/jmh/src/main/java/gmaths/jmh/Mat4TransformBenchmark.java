@@ -0,0 +1,85 @@
+package gmaths.jmh;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Mat4Transform: the allocating builders and the versions that write into a matrix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class Mat4TransformBenchmark {
+
+  private float x = 1, angle = 30, aspect = 1.33f;
+  private Mat4 rotation = Mat4Transform.rotateAroundY(30);
+  private Quat quat = new Quat();
+  private Vec3 translation = new Vec3(1,2,3), scale = new Vec3(1.5f,1.5f,1.5f);
+  private Vec3 from = new Vec3(4,6,15), to = new Vec3(0,0,0), up = new Vec3(0,1,0);
+  private Mat4 dest = new Mat4(1);
+
+  @Setup
+  public void setUp() {
+    quat.setAroundY(30);
+  }
+
+  @Benchmark
+  public Mat4 translate() {
+    return Mat4Transform.translate(x,2,3);
+  }
+
+  @Benchmark
+  public Mat4 translateInto() {
+    Mat4Transform.translate(x,2,3, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 scale() {
+    return Mat4Transform.scale(x,2,3);
+  }
+
+  @Benchmark
+  public Mat4 rotateAroundY() {
+    return Mat4Transform.rotateAroundY(angle);
+  }
+
+  @Benchmark
+  public Mat4 rotateAroundYInto() {
+    Mat4Transform.rotateAroundY(angle, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 composeTRSMat4() {
+    Mat4Transform.composeTRS(translation, rotation, scale, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 composeTRSQuat() {
+    Mat4Transform.composeTRS(translation, quat, scale, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 perspective() {
+    return Mat4Transform.perspective(45, aspect);
+  }
+
+  @Benchmark
+  public Mat4 lookAt() {
+    return Mat4Transform.lookAt(from, to, up);
+  }
+
+  @Benchmark
+  public Mat4 lookAtInto() {
+    Mat4Transform.lookAt(from, to, up, dest);
+    return dest;
+  }
+
+}
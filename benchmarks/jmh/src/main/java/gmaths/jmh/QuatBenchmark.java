@@ -0,0 +1,52 @@
+package gmaths.jmh;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Quat: products, interpolation and conversion to a matrix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class QuatBenchmark {
+
+  private Quat q1 = new Quat(), q2 = new Quat(), dest = new Quat();
+  private float t = 0.3f;
+  private Mat4 matrix = new Mat4(1);
+
+  @Setup
+  public void setUp() {
+    q1.setAroundY(30);
+    q2.setAroundX(-70);
+  }
+
+  @Benchmark
+  public Quat multiplyInto() {
+    Quat.multiplyInto(q1, q2, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Quat slerp() {
+    Quat.slerp(q1, q2, t, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Quat nlerp() {
+    Quat.nlerp(q1, q2, t, dest);
+    return dest;
+  }
+
+  @Benchmark
+  public Mat4 toMat4Into() {
+    q1.toMat4(matrix);
+    return matrix;
+  }
+
+}
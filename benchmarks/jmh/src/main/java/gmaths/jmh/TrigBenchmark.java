@@ -0,0 +1,50 @@
+package gmaths.jmh;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Trig in each mode against the two Math calls it replaces, and a rotation builder that uses it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class TrigBenchmark {
+
+  @Param({"EXACT", "POLYNOMIAL"})
+  private Trig.Mode mode;
+
+  private double angle = 0.7;
+  private float degrees = 40;
+  private float[] sinCos = new float[2];
+  private Mat4 dest = new Mat4(1);
+
+  @Setup
+  public void setMode() {
+    Trig.setMode(mode);
+  }
+
+  @Benchmark
+  public void mathSinCos(Blackhole bh) {
+    bh.consume((float)Math.sin(angle));
+    bh.consume((float)Math.cos(angle));
+  }
+
+  @Benchmark
+  public float[] sinCos() {
+    Trig.sinCos(angle, sinCos);
+    return sinCos;
+  }
+
+  @Benchmark
+  public Mat4 rotateAroundYInto() {
+    Mat4Transform.rotateAroundY(degrees, dest);
+    return dest;
+  }
+
+}
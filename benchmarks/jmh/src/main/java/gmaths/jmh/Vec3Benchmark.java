@@ -0,0 +1,45 @@
+package gmaths.jmh;
+
+import gmaths.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Vec3: the static operations, which return a new vector, and the in-place normalize.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class Vec3Benchmark {
+
+  private Vec3 v = new Vec3(1,2,3), w = new Vec3(-2,0.5f,4);
+  private Vec3 t = new Vec3();
+
+  @Benchmark
+  public Vec3 normalizeStatic() {
+    return Vec3.normalize(v);
+  }
+
+  @Benchmark
+  public Vec3 normalize() {
+    t.x = v.x;
+    t.y = v.y;
+    t.z = v.z;
+    t.normalize();
+    return t;
+  }
+
+  @Benchmark
+  public Vec3 crossProduct() {
+    return Vec3.crossProduct(v, w);
+  }
+
+  @Benchmark
+  public Vec3 addStatic() {
+    return Vec3.add(v, w);
+  }
+
+}
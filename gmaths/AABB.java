@@ -0,0 +1,198 @@
+package gmaths;
+
+/**
+ * An axis-aligned bounding box, stored as its min and max corners.
+ * A new box is empty (min > max) until points or other boxes are included in it.
+ */
+public final class AABB {
+  public final Vec3 min = new Vec3();
+  public final Vec3 max = new Vec3();
+
+  /**
+   * Constructor. Creates an empty box.
+   */
+  public AABB() {
+    setEmpty();
+  }
+
+  public AABB(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+    set(minX, minY, minZ, maxX, maxY, maxZ);
+  }
+
+  public AABB(Vec3 min, Vec3 max) {
+    set(min.x, min.y, min.z, max.x, max.y, max.z);
+  }
+
+  public AABB(AABB b) {
+    set(b);
+  }
+
+  public void set(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+    min.x = minX; min.y = minY; min.z = minZ;
+    max.x = maxX; max.y = maxY; max.z = maxZ;
+  }
+
+  public void set(AABB b) {
+    set(b.min.x, b.min.y, b.min.z, b.max.x, b.max.y, b.max.z);
+  }
+
+  public void setEmpty() {
+    set(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+        Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+  }
+
+  public boolean isEmpty() {
+    return min.x > max.x || min.y > max.y || min.z > max.z;
+  }
+
+  /**
+   * Grows the box to include the point (x,y,z).
+   */
+  public void include(float x, float y, float z) {
+    if (x < min.x) min.x = x;
+    if (y < min.y) min.y = y;
+    if (z < min.z) min.z = z;
+    if (x > max.x) max.x = x;
+    if (y > max.y) max.y = y;
+    if (z > max.z) max.z = z;
+  }
+
+  public void include(Vec3 p) {
+    include(p.x, p.y, p.z);
+  }
+
+  /**
+   * Grows the box to include box b. An empty b leaves the box unchanged.
+   */
+  public void include(AABB b) {
+    if (b.isEmpty()) return;
+    include(b.min.x, b.min.y, b.min.z);
+    include(b.max.x, b.max.y, b.max.z);
+  }
+
+  /**
+   * Grows the box to include count points from an interleaved vertex array, e.g. a Mesh's vertices.
+   * @param vertices The vertex data
+   * @param offset The index of the x value of the first point
+   * @param stride The number of floats from one point to the next
+   * @param count The number of points
+   */
+  public void include(float[] vertices, int offset, int stride, int count) {
+    for (int i=0, n=offset; i<count; ++i, n+=stride) {
+      include(vertices[n], vertices[n+1], vertices[n+2]);
+    }
+  }
+
+  public void getCenter(Vec3 dest) {
+    dest.x = (min.x+max.x)*0.5f;
+    dest.y = (min.y+max.y)*0.5f;
+    dest.z = (min.z+max.z)*0.5f;
+  }
+
+  /**
+   * Writes the half-size of the box along each axis into dest.
+   */
+  public void getExtents(Vec3 dest) {
+    dest.x = (max.x-min.x)*0.5f;
+    dest.y = (max.y-min.y)*0.5f;
+    dest.z = (max.z-min.z)*0.5f;
+  }
+
+  public boolean contains(float x, float y, float z) {
+    return x >= min.x && x <= max.x && y >= min.y && y <= max.y && z >= min.z && z <= max.z;
+  }
+
+  /**
+   * Returns true if box b is entirely inside this box.
+   */
+  public boolean contains(AABB b) {
+    return b.min.x >= min.x && b.max.x <= max.x && b.min.y >= min.y && b.max.y <= max.y
+        && b.min.z >= min.z && b.max.z <= max.z;
+  }
+
+  /**
+   * Grows the box by d on every side.
+   */
+  public void expand(float d) {
+    set(min.x-d, min.y-d, min.z-d, max.x+d, max.y+d, max.z+d);
+  }
+
+  /**
+   * Returns half the surface area of the box, which is what a bounding volume hierarchy compares
+   * when choosing where to insert a new box. An empty box gives 0.
+   */
+  public float halfArea() {
+    if (isEmpty()) return 0;
+    float dx = max.x-min.x, dy = max.y-min.y, dz = max.z-min.z;
+    return dx*dy + dy*dz + dz*dx;
+  }
+
+  /**
+   * Returns the distance along the ray from origin o in direction d at which the ray enters the box,
+   * measured in lengths of d, or 0 if o is inside the box. Returns Float.POSITIVE_INFINITY if the ray misses.
+   */
+  public float intersectRay(Vec3 o, Vec3 d) {
+    float near = 0, far = Float.POSITIVE_INFINITY;
+    for (int axis=0; axis<3; ++axis) {
+      float origin = (axis == 0) ? o.x : (axis == 1) ? o.y : o.z;
+      float dir = (axis == 0) ? d.x : (axis == 1) ? d.y : d.z;
+      float lo = (axis == 0) ? min.x : (axis == 1) ? min.y : min.z;
+      float hi = (axis == 0) ? max.x : (axis == 1) ? max.y : max.z;
+      if (dir == 0) {
+        if (origin < lo || origin > hi) return Float.POSITIVE_INFINITY;
+        continue;
+      }
+      float t0 = (lo-origin)/dir, t1 = (hi-origin)/dir;
+      if (t0 > t1) {
+        float t = t0; t0 = t1; t1 = t;
+      }
+      if (t0 > near) near = t0;
+      if (t1 < far) far = t1;
+      if (near > far) return Float.POSITIVE_INFINITY;
+    }
+    return near;
+  }
+
+  public boolean intersects(AABB b) {
+    return min.x <= b.max.x && max.x >= b.min.x
+        && min.y <= b.max.y && max.y >= b.min.y
+        && min.z <= b.max.z && max.z >= b.min.z;
+  }
+
+  /**
+   * Transforms box a by the affine matrix m and stores the box enclosing the result in dest.
+   * Uses Arvo's method: each element of the upper 3x3 part of m contributes its smaller product to the
+   * new min and its larger product to the new max, so the 8 corners never need to be transformed.
+   * dest may be the same object as a. An empty a gives an empty dest.
+   */
+  public static void transform(AABB a, Mat4 m, AABB dest) {
+    if (a.isEmpty()) {
+      dest.setEmpty();
+      return;
+    }
+    float aMinX = a.min.x, aMinY = a.min.y, aMinZ = a.min.z;
+    float aMaxX = a.max.x, aMaxY = a.max.y, aMaxZ = a.max.z;
+    float tx = m.get(0,3), ty = m.get(1,3), tz = m.get(2,3);
+    dest.set(
+      tx + lower(m.get(0,0), aMinX, aMaxX) + lower(m.get(0,1), aMinY, aMaxY) + lower(m.get(0,2), aMinZ, aMaxZ),
+      ty + lower(m.get(1,0), aMinX, aMaxX) + lower(m.get(1,1), aMinY, aMaxY) + lower(m.get(1,2), aMinZ, aMaxZ),
+      tz + lower(m.get(2,0), aMinX, aMaxX) + lower(m.get(2,1), aMinY, aMaxY) + lower(m.get(2,2), aMinZ, aMaxZ),
+      tx + upper(m.get(0,0), aMinX, aMaxX) + upper(m.get(0,1), aMinY, aMaxY) + upper(m.get(0,2), aMinZ, aMaxZ),
+      ty + upper(m.get(1,0), aMinX, aMaxX) + upper(m.get(1,1), aMinY, aMaxY) + upper(m.get(1,2), aMinZ, aMaxZ),
+      tz + upper(m.get(2,0), aMinX, aMaxX) + upper(m.get(2,1), aMinY, aMaxY) + upper(m.get(2,2), aMinZ, aMaxZ));
+  }
+
+  // the smaller and larger of e*lo and e*hi
+  private static float lower(float e, float lo, float hi) {
+    return (e < 0) ? e*hi : e*lo;
+  }
+
+  private static float upper(float e, float lo, float hi) {
+    return (e < 0) ? e*lo : e*hi;
+  }
+
+  public String toString() {
+    return "["+min+","+max+"]";
+  }
+
+} // end of AABB class
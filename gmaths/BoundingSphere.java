@@ -0,0 +1,98 @@
+package gmaths;
+
+/**
+ * A bounding sphere, stored as its center and radius.
+ */
+public final class BoundingSphere {
+  public final Vec3 center = new Vec3();
+  public float radius;
+
+  public BoundingSphere() {
+  }
+
+  public BoundingSphere(float x, float y, float z, float radius) {
+    set(x, y, z, radius);
+  }
+
+  public BoundingSphere(Vec3 center, float radius) {
+    set(center.x, center.y, center.z, radius);
+  }
+
+  public void set(float x, float y, float z, float radius) {
+    center.x = x;
+    center.y = y;
+    center.z = z;
+    this.radius = radius;
+  }
+
+  public void set(BoundingSphere s) {
+    set(s.center.x, s.center.y, s.center.z, s.radius);
+  }
+
+  /**
+   * Sets this sphere to enclose box b: centred on the box with radius half its diagonal.
+   */
+  public void set(AABB b) {
+    float ex = (b.max.x-b.min.x)*0.5f, ey = (b.max.y-b.min.y)*0.5f, ez = (b.max.z-b.min.z)*0.5f;
+    set(b.min.x+ex, b.min.y+ey, b.min.z+ez, (float)Math.sqrt(ex*ex + ey*ey + ez*ez));
+  }
+
+  public boolean contains(float x, float y, float z) {
+    float dx = x-center.x, dy = y-center.y, dz = z-center.z;
+    return dx*dx + dy*dy + dz*dz <= radius*radius;
+  }
+
+  public boolean intersects(BoundingSphere s) {
+    float dx = s.center.x-center.x, dy = s.center.y-center.y, dz = s.center.z-center.z;
+    float r = radius + s.radius;
+    return dx*dx + dy*dy + dz*dz <= r*r;
+  }
+
+  /**
+   * Transforms sphere s by the affine matrix m and stores the result in dest.
+   * The radius is scaled by the largest amount m stretches any direction (its largest singular value), so the
+   * result still encloses the transformed geometry under non-uniform scale and shear. dest may be the same
+   * object as s.
+   */
+  public static void transform(BoundingSphere s, Mat4 m, BoundingSphere dest) {
+    float x = s.center.x, y = s.center.y, z = s.center.z;
+    float scale = maxStretch(m);
+    dest.set(m.get(0,0)*x + m.get(0,1)*y + m.get(0,2)*z + m.get(0,3),
+             m.get(1,0)*x + m.get(1,1)*y + m.get(1,2)*z + m.get(1,3),
+             m.get(2,0)*x + m.get(2,1)*y + m.get(2,2)*z + m.get(2,3),
+             Math.nextUp(s.radius*scale));
+  }
+
+  /**
+   * Returns the largest singular value of the upper 3x3 part of m, rounded up: the square root of the
+   * largest eigenvalue of (m^T)m, found in closed form. Never more than the Frobenius norm.
+   */
+  public static float maxStretch(Mat4 m) {
+    // a = (m^T)m, symmetric
+    double a00 = 0, a01 = 0, a02 = 0, a11 = 0, a12 = 0, a22 = 0;
+    for (int r=0; r<3; ++r) {
+      double c0 = m.get(r,0), c1 = m.get(r,1), c2 = m.get(r,2);
+      a00 += c0*c0; a01 += c0*c1; a02 += c0*c2;
+      a11 += c1*c1; a12 += c1*c2; a22 += c2*c2;
+    }
+    double trace = a00+a11+a22;  // the square of the Frobenius norm
+    double q = trace/3;
+    double p1 = a01*a01 + a02*a02 + a12*a12;
+    double p2 = (a00-q)*(a00-q) + (a11-q)*(a11-q) + (a22-q)*(a22-q) + 2*p1;
+    double largest = q;
+    if (p2 > 0) {
+      double p = Math.sqrt(p2/6);
+      double b00 = (a00-q)/p, b11 = (a11-q)/p, b22 = (a22-q)/p, b01 = a01/p, b02 = a02/p, b12 = a12/p;
+      double det = b00*(b11*b22-b12*b12) - b01*(b01*b22-b12*b02) + b02*(b01*b12-b11*b02);
+      double phi = Math.acos(Math.max(-1, Math.min(1, det/2)))/3;
+      largest = q + 2*p*Math.cos(phi);
+    }
+    float stretch = Math.nextUp((float)Math.sqrt(Math.min(largest*(1+1e-9), trace)));
+    return Math.min(stretch, Math.nextUp((float)Math.sqrt(trace)));
+  }
+
+  public String toString() {
+    return "["+center+","+radius+"]";
+  }
+
+} // end of BoundingSphere class
@@ -0,0 +1,132 @@
+package gmaths;
+
+/**
+ * A view frustum as 6 planes (left, right, bottom, top, near, far), for testing whether bounding
+ * volumes can be seen. Each plane is stored as (a,b,c,d) with the normal (a,b,c) pointing into the
+ * frustum and normalized, so a*x + b*y + c*z + d is the signed distance of a point from the plane.
+ *
+ * The planes are extracted from a view-projection matrix (perspective*view) using the method of
+ * Gribb and Hartmann: with r0..r3 the rows of the matrix, the planes are r3+r0, r3-r0, r3+r1,
+ * r3-r1, r3+r2 and r3-r2. If the model matrix is included too, the planes are in model space.
+ */
+public final class Frustum {
+
+  public static final int OUTSIDE = 0;
+  public static final int INTERSECTING = 1;
+  public static final int INSIDE = 2;
+
+  private final float[] planes = new float[24];   // 6 planes of (a,b,c,d)
+
+  public Frustum() {
+  }
+
+  public Frustum(Mat4 viewProjection) {
+    set(viewProjection);
+  }
+
+  /**
+   * Extracts the planes from a view-projection matrix.
+   */
+  public void set(Mat4 m) {
+    for (int i=0; i<3; ++i) {
+      for (int side=0; side<2; ++side) {
+        float sign = (side == 0) ? 1 : -1;
+        int p = (i*2+side)*4;
+        float a = m.get(3,0) + sign*m.get(i,0);
+        float b = m.get(3,1) + sign*m.get(i,1);
+        float c = m.get(3,2) + sign*m.get(i,2);
+        float d = m.get(3,3) + sign*m.get(i,3);
+        float mag = (float)Math.sqrt(a*a + b*b + c*c);
+        planes[p] = a/mag;
+        planes[p+1] = b/mag;
+        planes[p+2] = c/mag;
+        planes[p+3] = d/mag;
+      }
+    }
+  }
+
+  /**
+   * Returns the signed distance of (x,y,z) from plane i: positive on the inside.
+   */
+  public float distance(int i, float x, float y, float z) {
+    int p = i*4;
+    return planes[p]*x + planes[p+1]*y + planes[p+2]*z + planes[p+3];
+  }
+
+  public boolean contains(float x, float y, float z) {
+    for (int p=0; p<24; p+=4) {
+      if (planes[p]*x + planes[p+1]*y + planes[p+2]*z + planes[p+3] < 0) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns false if the sphere is definitely outside the frustum.
+   * Spheres near a corner may be reported as visible when they are not.
+   */
+  public boolean intersects(float x, float y, float z, float radius) {
+    for (int p=0; p<24; p+=4) {
+      if (planes[p]*x + planes[p+1]*y + planes[p+2]*z + planes[p+3] < -radius) return false;
+    }
+    return true;
+  }
+
+  public boolean intersects(BoundingSphere s) {
+    return intersects(s.center.x, s.center.y, s.center.z, s.radius);
+  }
+
+  /**
+   * Returns false if the box is definitely outside the frustum.
+   * For each plane only the corner furthest along the plane normal (the positive vertex) is tested.
+   */
+  public boolean intersects(AABB b) {
+    for (int p=0; p<24; p+=4) {
+      float a = planes[p], bb = planes[p+1], c = planes[p+2];
+      float x = (a >= 0) ? b.max.x : b.min.x;
+      float y = (bb >= 0) ? b.max.y : b.min.y;
+      float z = (c >= 0) ? b.max.z : b.min.z;
+      if (a*x + bb*y + c*z + planes[p+3] < 0) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Classifies a box as OUTSIDE, INTERSECTING or INSIDE the frustum.
+   * INSIDE means everything in the box is visible, so the contents need no further tests.
+   */
+  public int classify(AABB b) {
+    int result = INSIDE;
+    for (int p=0; p<24; p+=4) {
+      float a = planes[p], bb = planes[p+1], c = planes[p+2], d = planes[p+3];
+      float px = (a >= 0) ? b.max.x : b.min.x, nx = (a >= 0) ? b.min.x : b.max.x;
+      float py = (bb >= 0) ? b.max.y : b.min.y, ny = (bb >= 0) ? b.min.y : b.max.y;
+      float pz = (c >= 0) ? b.max.z : b.min.z, nz = (c >= 0) ? b.min.z : b.max.z;
+      if (a*px + bb*py + c*pz + d < 0) return OUTSIDE;
+      if (a*nx + bb*ny + c*nz + d < 0) result = INTERSECTING;
+    }
+    return result;
+  }
+
+  /**
+   * Classifies a sphere as OUTSIDE, INTERSECTING or INSIDE the frustum.
+   */
+  public int classify(BoundingSphere s) {
+    int result = INSIDE;
+    for (int p=0; p<24; p+=4) {
+      float dist = planes[p]*s.center.x + planes[p+1]*s.center.y + planes[p+2]*s.center.z + planes[p+3];
+      if (dist < -s.radius) return OUTSIDE;
+      if (dist < s.radius) result = INTERSECTING;
+    }
+    return result;
+  }
+
+  public String toString() {
+    String s = "{";
+    for (int p=0; p<24; p+=4) {
+      s += "("+planes[p]+","+planes[p+1]+","+planes[p+2]+","+planes[p+3]+")";
+      if (p<20) s += ",";
+    }
+    return s+"}";
+  }
+
+} // end of Frustum class
@@ -1,135 +1,347 @@
 package gmaths;
 
+import java.nio.FloatBuffer;
+
 public class Mat4 {   // row column formulation
 
-  private float[][] values;
+  private final float[] values;   // row-major, values[r*4+c]
   
   public Mat4() {
     this(0);
   }
   
   public Mat4(float f) {
-    values = new float[4][4];
-    makeZero();
-    for (int i=0; i<4; ++i) {
-      values[i][i] = f;
-    }
+    values = new float[16];
+    values[0] = values[5] = values[10] = values[15] = f;
   }
   
   public Mat4(Mat4 m) {
-    this.values = new float[4][4];
-    for (int i=0; i<4; ++i) {
-      for (int j=0; j<4; ++j) {
-        this.values[i][j] = m.values[i][j];
-      }
-    }
+    this.values = new float[16];
+    System.arraycopy(m.values, 0, this.values, 0, 16);
   }
   
   public void set(int r, int c, float f) {
-    values[r][c] = f;
+    values[r*4+c] = f;
+  }
+
+  public float get(int r, int c) {
+    return values[r*4+c];
+  }
+
+  // the row-major values themselves, for gmaths code that only reads them (e.g. Mat4Batch), so nothing is copied
+  float[] values() {
+    return values;
+  }
+
+  public void set(Mat4 m) {
+    System.arraycopy(m.values, 0, values, 0, 16);
+  }
+
+  public void setIdentity() {
+    makeZero();
+    values[0] = values[5] = values[10] = values[15] = 1;
   }
   
   private void makeZero() {
-    for (int i=0; i<4; ++i) {
-      for (int j=0; j<4; ++j) {
-        values[i][j] = 0;
-      }
+    for (int i=0; i<16; ++i) {
+      values[i] = 0;
     }
   }
   
   public void transpose() {
     for (int i=0; i<4; ++i) {
-      for (int j=i; j<4; ++j) {
-        float t = values[i][j];
-        values[i][j] = values[j][i];
-        values[j][i] = t;
+      for (int j=i+1; j<4; ++j) {
+        float t = values[i*4+j];
+        values[i*4+j] = values[j*4+i];
+        values[j*4+i] = t;
       }
     }
   }
     
   public static Mat4 transpose(Mat4 m) {
     Mat4 a = new Mat4(m);
-    for (int i=0; i<4; ++i) {
-      for (int j=i; j<4; ++j) {
-        float t = a.values[i][j];
-        a.values[i][j] = a.values[j][i];
-        a.values[j][i] = t;
-      }
-    }
+    a.transpose();
     return a;
   }
 
   public static Mat4 multiply(Mat4 a, Mat4 b) {
     Mat4 result = new Mat4();
-    for (int i=0; i<4; ++i) {
-      for (int j=0; j<4; ++j) {
-        for (int k=0; k<4; ++k) {
-          result.values[i][j] += a.values[i][k]*b.values[k][j];
-        }
-      }
-    }
+    multiplyInto(a, b, result);
     return result;
   }
 
+  /**
+   * Returns true if a and b hold exactly the same values.
+   */
+  public static boolean equals(Mat4 a, Mat4 b) {
+    return java.util.Arrays.equals(a.values, b.values);
+  }
+
+  /**
+   * Returns true if the bottom row is (0,0,0,1), i.e. the matrix is an affine transformation.
+   * Every matrix built by Mat4Transform other than perspective is affine.
+   */
+  public boolean isAffine() {
+    return values[12] == 0 && values[13] == 0 && values[14] == 0 && values[15] == 1;
+  }
+
+  /**
+   * Calculates a*b and stores the result in dest, without allocating.
+   * dest may be the same object as a or b.
+   * If both matrices are affine the cheaper multiplyAffineInto is used.
+   */
+  public static void multiplyInto(Mat4 a, Mat4 b, Mat4 dest) {
+    if (a.isAffine() && b.isAffine()) {
+      multiplyAffineInto(a, b, dest);
+      return;
+    }
+    float[] m = a.values;
+    float[] n = b.values;
+    float r00 = m[0]*n[0] + m[1]*n[4] + m[2]*n[8] + m[3]*n[12];
+    float r01 = m[0]*n[1] + m[1]*n[5] + m[2]*n[9] + m[3]*n[13];
+    float r02 = m[0]*n[2] + m[1]*n[6] + m[2]*n[10] + m[3]*n[14];
+    float r03 = m[0]*n[3] + m[1]*n[7] + m[2]*n[11] + m[3]*n[15];
+    float r10 = m[4]*n[0] + m[5]*n[4] + m[6]*n[8] + m[7]*n[12];
+    float r11 = m[4]*n[1] + m[5]*n[5] + m[6]*n[9] + m[7]*n[13];
+    float r12 = m[4]*n[2] + m[5]*n[6] + m[6]*n[10] + m[7]*n[14];
+    float r13 = m[4]*n[3] + m[5]*n[7] + m[6]*n[11] + m[7]*n[15];
+    float r20 = m[8]*n[0] + m[9]*n[4] + m[10]*n[8] + m[11]*n[12];
+    float r21 = m[8]*n[1] + m[9]*n[5] + m[10]*n[9] + m[11]*n[13];
+    float r22 = m[8]*n[2] + m[9]*n[6] + m[10]*n[10] + m[11]*n[14];
+    float r23 = m[8]*n[3] + m[9]*n[7] + m[10]*n[11] + m[11]*n[15];
+    float r30 = m[12]*n[0] + m[13]*n[4] + m[14]*n[8] + m[15]*n[12];
+    float r31 = m[12]*n[1] + m[13]*n[5] + m[14]*n[9] + m[15]*n[13];
+    float r32 = m[12]*n[2] + m[13]*n[6] + m[14]*n[10] + m[15]*n[14];
+    float r33 = m[12]*n[3] + m[13]*n[7] + m[14]*n[11] + m[15]*n[15];
+    float[] d = dest.values;
+    d[0] = r00;  d[1] = r01;  d[2] = r02;  d[3] = r03;
+    d[4] = r10;  d[5] = r11;  d[6] = r12;  d[7] = r13;
+    d[8] = r20;  d[9] = r21;  d[10] = r22; d[11] = r23;
+    d[12] = r30; d[13] = r31; d[14] = r32; d[15] = r33;
+  }
+
+  /**
+   * Calculates a*b for two affine matrices and stores the result in dest, without allocating.
+   * The constant bottom rows are not read, so this needs 36 multiplies rather than 64.
+   * dest may be the same object as a or b.
+   */
+  public static void multiplyAffineInto(Mat4 a, Mat4 b, Mat4 dest) {
+    float[] m = a.values;
+    float[] n = b.values;
+    float r00 = m[0]*n[0] + m[1]*n[4] + m[2]*n[8];
+    float r01 = m[0]*n[1] + m[1]*n[5] + m[2]*n[9];
+    float r02 = m[0]*n[2] + m[1]*n[6] + m[2]*n[10];
+    float r03 = m[0]*n[3] + m[1]*n[7] + m[2]*n[11] + m[3];
+    float r10 = m[4]*n[0] + m[5]*n[4] + m[6]*n[8];
+    float r11 = m[4]*n[1] + m[5]*n[5] + m[6]*n[9];
+    float r12 = m[4]*n[2] + m[5]*n[6] + m[6]*n[10];
+    float r13 = m[4]*n[3] + m[5]*n[7] + m[6]*n[11] + m[7];
+    float r20 = m[8]*n[0] + m[9]*n[4] + m[10]*n[8];
+    float r21 = m[8]*n[1] + m[9]*n[5] + m[10]*n[9];
+    float r22 = m[8]*n[2] + m[9]*n[6] + m[10]*n[10];
+    float r23 = m[8]*n[3] + m[9]*n[7] + m[10]*n[11] + m[11];
+    float[] d = dest.values;
+    d[0] = r00;  d[1] = r01;  d[2] = r02;  d[3] = r03;
+    d[4] = r10;  d[5] = r11;  d[6] = r12;  d[7] = r13;
+    d[8] = r20;  d[9] = r21;  d[10] = r22; d[11] = r23;
+    d[12] = 0;   d[13] = 0;   d[14] = 0;   d[15] = 1;
+  }
+
+  /**
+   * Post-multiplies this matrix by m, i.e. this = this*m.
+   */
+  public void mulLocal(Mat4 m) {
+    multiplyInto(this, m, this);
+  }
+
   // See https://www.geometrictools.com/Documentation/LaplaceExpansionTheorem.pdf
   public static Mat4 inverse(Mat4 m) {
-    float s0 = m.values[0][0] * m.values[1][1] - m.values[1][0] * m.values[0][1];
-    float s1 = m.values[0][0] * m.values[1][2] - m.values[1][0] * m.values[0][2];
-    float s2 = m.values[0][0] * m.values[1][3] - m.values[1][0] * m.values[0][3];
-    float s3 = m.values[0][1] * m.values[1][2] - m.values[1][1] * m.values[0][2];
-    float s4 = m.values[0][1] * m.values[1][3] - m.values[1][1] * m.values[0][3];
-    float s5 = m.values[0][2] * m.values[1][3] - m.values[1][2] * m.values[0][3];
-
-    float c5 = m.values[2][2] * m.values[3][3] - m.values[3][2] * m.values[2][3];
-    float c4 = m.values[2][1] * m.values[3][3] - m.values[3][1] * m.values[2][3];
-    float c3 = m.values[2][1] * m.values[3][2] - m.values[3][1] * m.values[2][2];
-    float c2 = m.values[2][0] * m.values[3][3] - m.values[3][0] * m.values[2][3];
-    float c1 = m.values[2][0] * m.values[3][2] - m.values[3][0] * m.values[2][2];
-    float c0 = m.values[2][0] * m.values[3][1] - m.values[3][0] * m.values[2][1];
+    if (m.isAffine()) {
+      Mat4 b = new Mat4();
+      inverseAffine(m, b);
+      return b;
+    }
+    float s0 = m.values[0] * m.values[5] - m.values[4] * m.values[1];
+    float s1 = m.values[0] * m.values[6] - m.values[4] * m.values[2];
+    float s2 = m.values[0] * m.values[7] - m.values[4] * m.values[3];
+    float s3 = m.values[1] * m.values[6] - m.values[5] * m.values[2];
+    float s4 = m.values[1] * m.values[7] - m.values[5] * m.values[3];
+    float s5 = m.values[2] * m.values[7] - m.values[6] * m.values[3];
+
+    float c5 = m.values[10] * m.values[15] - m.values[14] * m.values[11];
+    float c4 = m.values[9] * m.values[15] - m.values[13] * m.values[11];
+    float c3 = m.values[9] * m.values[14] - m.values[13] * m.values[10];
+    float c2 = m.values[8] * m.values[15] - m.values[12] * m.values[11];
+    float c1 = m.values[8] * m.values[14] - m.values[12] * m.values[10];
+    float c0 = m.values[8] * m.values[13] - m.values[12] * m.values[9];
 
     // Should check for 0 determinant
     float invdet = 1.0f / (s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0);
 
     Mat4 b = new Mat4();
 
-    b.values[0][0] = ( m.values[1][1] * c5 - m.values[1][2] * c4 + m.values[1][3] * c3) * invdet;
-    b.values[0][1] = (-m.values[0][1] * c5 + m.values[0][2] * c4 - m.values[0][3] * c3) * invdet;
-    b.values[0][2] = ( m.values[3][1] * s5 - m.values[3][2] * s4 + m.values[3][3] * s3) * invdet;
-    b.values[0][3] = (-m.values[2][1] * s5 + m.values[2][2] * s4 - m.values[2][3] * s3) * invdet;
+    b.values[0] = ( m.values[5] * c5 - m.values[6] * c4 + m.values[7] * c3) * invdet;
+    b.values[1] = (-m.values[1] * c5 + m.values[2] * c4 - m.values[3] * c3) * invdet;
+    b.values[2] = ( m.values[13] * s5 - m.values[14] * s4 + m.values[15] * s3) * invdet;
+    b.values[3] = (-m.values[9] * s5 + m.values[10] * s4 - m.values[11] * s3) * invdet;
 
-    b.values[1][0] = (-m.values[1][0] * c5 + m.values[1][2] * c2 - m.values[1][3] * c1) * invdet;
-    b.values[1][1] = ( m.values[0][0] * c5 - m.values[0][2] * c2 + m.values[0][3] * c1) * invdet;
-    b.values[1][2] = (-m.values[3][0] * s5 + m.values[3][2] * s2 - m.values[3][3] * s1) * invdet;
-    b.values[1][3] = ( m.values[2][0] * s5 - m.values[2][2] * s2 + m.values[2][3] * s1) * invdet;
+    b.values[4] = (-m.values[4] * c5 + m.values[6] * c2 - m.values[7] * c1) * invdet;
+    b.values[5] = ( m.values[0] * c5 - m.values[2] * c2 + m.values[3] * c1) * invdet;
+    b.values[6] = (-m.values[12] * s5 + m.values[14] * s2 - m.values[15] * s1) * invdet;
+    b.values[7] = ( m.values[8] * s5 - m.values[10] * s2 + m.values[11] * s1) * invdet;
 
-    b.values[2][0] = ( m.values[1][0] * c4 - m.values[1][1] * c2 + m.values[1][3] * c0) * invdet;
-    b.values[2][1] = (-m.values[0][0] * c4 + m.values[0][1] * c2 - m.values[0][3] * c0) * invdet;
-    b.values[2][2] = ( m.values[3][0] * s4 - m.values[3][1] * s2 + m.values[3][3] * s0) * invdet;
-    b.values[2][3] = (-m.values[2][0] * s4 + m.values[2][1] * s2 - m.values[2][3] * s0) * invdet;
+    b.values[8] = ( m.values[4] * c4 - m.values[5] * c2 + m.values[7] * c0) * invdet;
+    b.values[9] = (-m.values[0] * c4 + m.values[1] * c2 - m.values[3] * c0) * invdet;
+    b.values[10] = ( m.values[12] * s4 - m.values[13] * s2 + m.values[15] * s0) * invdet;
+    b.values[11] = (-m.values[8] * s4 + m.values[9] * s2 - m.values[11] * s0) * invdet;
 
-    b.values[3][0] = (-m.values[1][0] * c3 + m.values[1][1] * c1 - m.values[1][2] * c0) * invdet;
-    b.values[3][1] = ( m.values[0][0] * c3 - m.values[0][1] * c1 + m.values[0][2] * c0) * invdet;
-    b.values[3][2] = (-m.values[3][0] * s3 + m.values[3][1] * s1 - m.values[3][2] * s0) * invdet;
-    b.values[3][3] = ( m.values[2][0] * s3 - m.values[2][1] * s1 + m.values[2][2] * s0) * invdet;
+    b.values[12] = (-m.values[4] * c3 + m.values[5] * c1 - m.values[6] * c0) * invdet;
+    b.values[13] = ( m.values[0] * c3 - m.values[1] * c1 + m.values[2] * c0) * invdet;
+    b.values[14] = (-m.values[12] * s3 + m.values[13] * s1 - m.values[14] * s0) * invdet;
+    b.values[15] = ( m.values[8] * s3 - m.values[9] * s1 + m.values[10] * s0) * invdet;
 
     return b; 
   }
   
+  /**
+   * Inverts an affine matrix and stores the result in dest, without allocating.
+   * Only the upper 3x3 part is inverted (by cofactors); the translation is then -inverse*t.
+   * dest may be the same object as m.
+   */
+  public static void inverseAffine(Mat4 m, Mat4 dest) {
+    float[] v = m.values;
+    float c00 = v[5]*v[10] - v[6]*v[9];
+    float c01 = v[6]*v[8] - v[4]*v[10];
+    float c02 = v[4]*v[9] - v[5]*v[8];
+    // Should check for 0 determinant
+    float invdet = 1.0f / (v[0]*c00 + v[1]*c01 + v[2]*c02);
+    float i00 = c00 * invdet;
+    float i01 = (v[2]*v[9] - v[1]*v[10]) * invdet;
+    float i02 = (v[1]*v[6] - v[2]*v[5]) * invdet;
+    float i10 = c01 * invdet;
+    float i11 = (v[0]*v[10] - v[2]*v[8]) * invdet;
+    float i12 = (v[2]*v[4] - v[0]*v[6]) * invdet;
+    float i20 = c02 * invdet;
+    float i21 = (v[1]*v[8] - v[0]*v[9]) * invdet;
+    float i22 = (v[0]*v[5] - v[1]*v[4]) * invdet;
+    float tx = v[3], ty = v[7], tz = v[11];
+    float[] d = dest.values;
+    d[0] = i00;  d[1] = i01;  d[2] = i02;  d[3] = -(i00*tx + i01*ty + i02*tz);
+    d[4] = i10;  d[5] = i11;  d[6] = i12;  d[7] = -(i10*tx + i11*ty + i12*tz);
+    d[8] = i20;  d[9] = i21;  d[10] = i22; d[11] = -(i20*tx + i21*ty + i22*tz);
+    d[12] = 0;   d[13] = 0;   d[14] = 0;   d[15] = 1;
+  }
+
+  /**
+   * Inverts a rigid-body matrix (rotation and translation only, no scale) and stores the result in dest.
+   * The rotation is transposed and the translation becomes -transpose(rotation)*t.
+   * The result is wrong if m contains scale or shear; use inverseAffine for those.
+   * dest may be the same object as m.
+   */
+  public static void inverseRigid(Mat4 m, Mat4 dest) {
+    float[] v = m.values;
+    float r00 = v[0], r01 = v[1], r02 = v[2],  tx = v[3];
+    float r10 = v[4], r11 = v[5], r12 = v[6],  ty = v[7];
+    float r20 = v[8], r21 = v[9], r22 = v[10], tz = v[11];
+    float[] d = dest.values;
+    d[0] = r00;  d[1] = r10;  d[2] = r20;  d[3] = -(r00*tx + r10*ty + r20*tz);
+    d[4] = r01;  d[5] = r11;  d[6] = r21;  d[7] = -(r01*tx + r11*ty + r21*tz);
+    d[8] = r02;  d[9] = r12;  d[10] = r22; d[11] = -(r02*tx + r12*ty + r22*tz);
+    d[12] = 0;   d[13] = 0;   d[14] = 0;   d[15] = 1;
+  }
+
+  /**
+   * Calculates the normal matrix of m, the inverse transpose of its upper 3x3 part, and stores it in
+   * the upper 3x3 part of dest. The rest of dest is set to identity. dest may be the same object as m.
+   * If the upper 3x3 part is a rotation with uniform scale s, the result is simply m/(s*s), so the
+   * inverse is skipped. Otherwise it is the cofactor matrix divided by the determinant.
+   */
+  public static void normalMatrix(Mat4 m, Mat4 dest) {
+    float[] v = m.values;
+    float[] d = dest.values;
+    float xx = v[0]*v[0] + v[4]*v[4] + v[8]*v[8];
+    float yy = v[1]*v[1] + v[5]*v[5] + v[9]*v[9];
+    float zz = v[2]*v[2] + v[6]*v[6] + v[10]*v[10];
+    float xy = v[0]*v[1] + v[4]*v[5] + v[8]*v[9];
+    float xz = v[0]*v[2] + v[4]*v[6] + v[8]*v[10];
+    float yz = v[1]*v[2] + v[5]*v[6] + v[9]*v[10];
+    float eps = 1e-5f*xx;
+    if (Math.abs(yy-xx) <= eps && Math.abs(zz-xx) <= eps
+        && Math.abs(xy) <= eps && Math.abs(xz) <= eps && Math.abs(yz) <= eps) {
+      float f = 1.0f / xx;
+      d[0] = v[0]*f;  d[1] = v[1]*f;  d[2] = v[2]*f;
+      d[4] = v[4]*f;  d[5] = v[5]*f;  d[6] = v[6]*f;
+      d[8] = v[8]*f;  d[9] = v[9]*f;  d[10] = v[10]*f;
+    }
+    else {
+      float c00 = v[5]*v[10] - v[6]*v[9];
+      float c01 = v[6]*v[8] - v[4]*v[10];
+      float c02 = v[4]*v[9] - v[5]*v[8];
+      float c10 = v[2]*v[9] - v[1]*v[10];
+      float c11 = v[0]*v[10] - v[2]*v[8];
+      float c12 = v[1]*v[8] - v[0]*v[9];
+      float c20 = v[1]*v[6] - v[2]*v[5];
+      float c21 = v[2]*v[4] - v[0]*v[6];
+      float c22 = v[0]*v[5] - v[1]*v[4];
+      // Should check for 0 determinant
+      float invdet = 1.0f / (v[0]*c00 + v[1]*c01 + v[2]*c02);
+      d[0] = c00*invdet;  d[1] = c01*invdet;  d[2] = c02*invdet;
+      d[4] = c10*invdet;  d[5] = c11*invdet;  d[6] = c12*invdet;
+      d[8] = c20*invdet;  d[9] = c21*invdet;  d[10] = c22*invdet;
+    }
+    d[3] = 0;   d[7] = 0;   d[11] = 0;
+    d[12] = 0;  d[13] = 0;  d[14] = 0;  d[15] = 1;
+  }
+  
   public float[] toFloatArrayForGLSL() {  // col by row
     float[] f = new float[16];
+    storeColumnMajor(f, 0);
+    return f;
+  }
+
+  /**
+   * Copies the matrix in column-major (GLSL) order into dst, starting at offset.
+   */
+  public void storeColumnMajor(float[] dst, int offset) {
     for (int j=0; j<4; ++j) {
       for (int i=0; i<4; ++i) {
-        f[j*4+i] = values[i][j];
+        dst[offset+j*4+i] = values[i*4+j];
+      }
+    }
+  }
+
+  /**
+   * Copies the matrix in row-major order (the order used by Mat4Batch) into dst, starting at offset.
+   */
+  public void storeRowMajor(float[] dst, int offset) {
+    System.arraycopy(values, 0, dst, offset, 16);
+  }
+
+  /**
+   * Sets the matrix from 16 row-major values in src, starting at offset.
+   */
+  public void loadRowMajor(float[] src, int offset) {
+    System.arraycopy(src, offset, values, 0, 16);
+  }
+
+  /**
+   * Copies the matrix in column-major (GLSL) order into buf, starting at its current position.
+   * The position of buf is not changed, so it can be passed straight to glUniformMatrix4fv.
+   */
+  public void store(FloatBuffer buf) {
+    int p = buf.position();
+    for (int j=0; j<4; ++j) {
+      for (int i=0; i<4; ++i) {
+        buf.put(p+j*4+i, values[i*4+j]);
       }
     }
-    return f;
   }
   
   public String asFloatArrayForGLSL() {  // col by row
     String s = "{";
     for (int j=0; j<4; ++j) {
       for (int i=0; i<4; ++i) {
-        s += String.format("%.2f",values[i][j]);
+        s += String.format("%.2f",values[i*4+j]);
         if (!(j==3 && i==3)) s+=",";
       }
     }
@@ -141,7 +353,7 @@ public class Mat4 {   // row column formulation
     for (int i=0; i<4; ++i) {
       s += (i==0) ? "{" : " {";
       for (int j=0; j<4; ++j) {
-        s += String.format("%.2f",values[i][j]);  
+        s += String.format("%.2f",values[i*4+j]);  
         if (j<3) s += ", ";
       }
       s += (i==3) ? "}" : "},\n";
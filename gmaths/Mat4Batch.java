@@ -0,0 +1,158 @@
+package gmaths;
+
+/**
+ * Batch versions of the Mat4 operations, working on many matrices or points at once.
+ * Matrices are packed 16 floats each in row-major order (see Mat4.storeRowMajor) and
+ * points/normals are packed x,y,z,x,y,z,...
+ *
+ * Two implementations are available: a scalar one, which is always present, and one using the
+ * jdk.incubator.vector API (gmaths.vector.VectorKernels). The vector version is only used if it has
+ * been compiled and the JVM was started with --add-modules jdk.incubator.vector; otherwise the scalar
+ * version is used. The choice can be forced with -Dgmaths.batch=scalar|vector or with useVector().
+ * Both give the same results as Mat4.multiply to within float rounding, and neither allocates;
+ * the vector version only speeds up multiply (see VectorKernels).
+ */
+public final class Mat4Batch {
+
+  /**
+   * The operations provided by a batch implementation.
+   */
+  public interface Kernels {
+    void multiply(float[] a, float[] b, float[] out, int count);
+    void transformPoints(float[] m, float[] xyz, int count);
+    void transformNormals(float[] m, float[] xyz, int count);
+  }
+
+  private static final String VECTOR_KERNELS = "gmaths.vector.VectorKernels";
+
+  private static final Kernels SCALAR = new ScalarKernels();
+  private static Kernels vector = loadVectorKernels();
+  private static Kernels kernels = (vector != null && !"scalar".equals(System.getProperty("gmaths.batch"))) ? vector : SCALAR;
+
+  private Mat4Batch() {
+  }
+
+  private static Kernels loadVectorKernels() {
+    try {
+      return (Kernels)Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+    }
+    catch (Throwable e) {   // not compiled, or the incubator module is not present
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if the jdk.incubator.vector implementation could be loaded.
+   */
+  public static boolean isVectorAvailable() {
+    return vector != null;
+  }
+
+  /**
+   * Returns true if the jdk.incubator.vector implementation is in use.
+   */
+  public static boolean isUsingVector() {
+    return kernels == vector && vector != null;
+  }
+
+  /**
+   * Selects the vector implementation (if it is available) or the scalar one.
+   * @param use true to use the vector implementation
+   * @return true if the vector implementation is now in use
+   */
+  public static boolean useVector(boolean use) {
+    kernels = (use && vector != null) ? vector : SCALAR;
+    return isUsingVector();
+  }
+
+  /**
+   * Multiplies count pairs of matrices: out[i] = a[i]*b[i].
+   * out must not overlap a or b.
+   */
+  public static void multiply(float[] a, float[] b, float[] out, int count) {
+    kernels.multiply(a, b, out, count);
+  }
+
+  /**
+   * Multiplies the single matrices at offsets ao and bo and stores the product at offset oo:
+   * out[oo] = a[ao]*b[bo]. For packed matrix arrays such as those of CompiledSceneGraph.
+   * out[oo] must not overlap a[ao] or b[bo].
+   */
+  public static void multiply(float[] a, int ao, float[] b, int bo, float[] out, int oo) {
+    ScalarKernels.multiply(a, ao, b, bo, out, oo);
+  }
+
+  /**
+   * As multiply(a, ao, b, bo, out, oo) for two affine matrices: only the top three rows are
+   * calculated and the bottom row of the result is set to (0,0,0,1).
+   */
+  public static void multiplyAffine(float[] a, int ao, float[] b, int bo, float[] out, int oo) {
+    for (int r=0; r<3; ++r) {
+      float m0 = a[ao+r*4], m1 = a[ao+r*4+1], m2 = a[ao+r*4+2];
+      out[oo+r*4]   = m0*b[bo]   + m1*b[bo+4] + m2*b[bo+8];
+      out[oo+r*4+1] = m0*b[bo+1] + m1*b[bo+5] + m2*b[bo+9];
+      out[oo+r*4+2] = m0*b[bo+2] + m1*b[bo+6] + m2*b[bo+10];
+      out[oo+r*4+3] = m0*b[bo+3] + m1*b[bo+7] + m2*b[bo+11] + a[ao+r*4+3];
+    }
+    out[oo+12] = 0;
+    out[oo+13] = 0;
+    out[oo+14] = 0;
+    out[oo+15] = 1;
+  }
+
+  /**
+   * Transforms count points (w=1) in place by m.
+   */
+  public static void transformPoints(Mat4 m, float[] xyz, int count) {
+    kernels.transformPoints(m.values(), xyz, count);
+  }
+
+  /**
+   * Transforms count direction vectors (w=0) in place by the upper 3x3 part of m.
+   * For normals, pass the normal matrix (the inverse transpose of the model matrix).
+   * The results are not renormalized.
+   */
+  public static void transformNormals(Mat4 m, float[] xyz, int count) {
+    kernels.transformNormals(m.values(), xyz, count);
+  }
+
+  /**
+   * The scalar implementation. Also used as the reference for the vector one.
+   */
+  static final class ScalarKernels implements Kernels {
+
+    public void multiply(float[] a, float[] b, float[] out, int count) {
+      for (int i=0, o=0; i<count; ++i, o+=16) {
+        multiply(a, o, b, o, out, o);
+      }
+    }
+
+    static void multiply(float[] a, int ao, float[] b, int bo, float[] out, int oo) {
+      for (int r=0; r<4; ++r) {
+        float m0 = a[ao+r*4], m1 = a[ao+r*4+1], m2 = a[ao+r*4+2], m3 = a[ao+r*4+3];
+        for (int c=0; c<4; ++c) {
+          out[oo+r*4+c] = m0*b[bo+c] + m1*b[bo+4+c] + m2*b[bo+8+c] + m3*b[bo+12+c];
+        }
+      }
+    }
+
+    public void transformPoints(float[] m, float[] xyz, int count) {
+      for (int i=0, n=count*3; i<n; i+=3) {
+        float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+        xyz[i]   = m[0]*x + m[1]*y + m[2]*z + m[3];
+        xyz[i+1] = m[4]*x + m[5]*y + m[6]*z + m[7];
+        xyz[i+2] = m[8]*x + m[9]*y + m[10]*z + m[11];
+      }
+    }
+
+    public void transformNormals(float[] m, float[] xyz, int count) {
+      for (int i=0, n=count*3; i<n; i+=3) {
+        float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+        xyz[i]   = m[0]*x + m[1]*y + m[2]*z;
+        xyz[i+1] = m[4]*x + m[5]*y + m[6]*z;
+        xyz[i+2] = m[8]*x + m[9]*y + m[10]*z;
+      }
+    }
+  }
+
+} // end of Mat4Batch class
@@ -34,11 +34,34 @@ public final class Mat4Transform  {   // row column formulation
    */
    public static Mat4 translate(float tx, float ty, float tz) {
     Mat4 m = new Mat4(1);
-    m.set(0,3, tx);
-    m.set(1,3, ty);
-    m.set(2,3, tz);
+    translate(tx, ty, tz, m);
     return m;
   }
+
+  /**
+   * Writes a 4x4 translation matrix into dest, without allocating.
+   * 
+   * @param v The translation amount (x,y,z)
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void translate(Vec3 v, Mat4 dest) {
+    translate(v.x, v.y, v.z, dest);
+  }
+
+  /**
+   * Writes a 4x4 translation matrix into dest, without allocating.
+   * 
+   * @param tx The translation amount for x
+   * @param ty The translation amount for y
+   * @param tz The translation amount for z
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void translate(float tx, float ty, float tz, Mat4 dest) {
+    dest.setIdentity();
+    dest.set(0,3, tx);
+    dest.set(1,3, ty);
+    dest.set(2,3, tz);
+  }
   
   /**
    * Creates a 4x4 scale matrix
@@ -60,12 +83,25 @@ public final class Mat4Transform  {   // row column formulation
    */
    public static Mat4 scale(float sx, float sy, float sz) {
     Mat4 m = new Mat4(1);
-    m.set(0,0, sx);
-    m.set(1,1, sy);
-    m.set(2,2, sz);
+    scale(sx, sy, sz, m);
     return m;
   }
 
+  /**
+   * Writes a 4x4 scale matrix into dest, without allocating.
+   * 
+   * @param sx The scale amount for x
+   * @param sy The scale amount for y
+   * @param sz The scale amount for z
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void scale(float sx, float sy, float sz, Mat4 dest) {
+    dest.setIdentity();
+    dest.set(0,0, sx);
+    dest.set(1,1, sy);
+    dest.set(2,2, sz);
+  }
+
   /**
    * Creates a 4x4 rotation matrix to rotate around the X axis.
    * 
@@ -74,13 +110,26 @@ public final class Mat4Transform  {   // row column formulation
    */
    public static Mat4 rotateAroundX(float angle) {   // angle in degrees
     Mat4 m = new Mat4(1);
-    angle = (float)(angle*Math.PI/180.0);
-    m.set(1,1, (float)Math.cos(angle));
-    m.set(1,2, -(float)Math.sin(angle));
-    m.set(2,1, (float)Math.sin(angle));
-    m.set(2,2, (float)Math.cos(angle));
+    rotateAroundX(angle, m);
     return m;
   }
+
+  /**
+   * Writes a 4x4 rotation matrix around the X axis into dest, without allocating.
+   * 
+   * @param angle The amount of rotation in degrees. Positive values indicate anticlockwise rotation.
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void rotateAroundX(float angle, Mat4 dest) {   // angle in degrees
+    float radians = (float)(angle*Math.PI/180.0);
+    long sc = Trig.sinCos(radians);
+    float s = Trig.sinOf(sc), c = Trig.cosOf(sc);
+    dest.setIdentity();
+    dest.set(1,1, c);
+    dest.set(1,2, -s);
+    dest.set(2,1, s);
+    dest.set(2,2, c);
+  }
   
   /**
    * Creates a 4x4 rotation matrix to rotate around the Y axis.
@@ -90,14 +139,27 @@ public final class Mat4Transform  {   // row column formulation
    */
    public static Mat4 rotateAroundY(float angle) {   // angle in degrees
     Mat4 m = new Mat4(1);
-    angle = (float)(angle*Math.PI/180.0);
-    m.set(0,0, (float)Math.cos(angle));
-    m.set(0,2, (float)Math.sin(angle));
-    m.set(2,0, -(float)Math.sin(angle));
-    m.set(2,2, (float)Math.cos(angle));
+    rotateAroundY(angle, m);
     return m;
   }
 
+  /**
+   * Writes a 4x4 rotation matrix around the Y axis into dest, without allocating.
+   * 
+   * @param angle The amount of rotation in degrees. Positive values indicate anticlockwise rotation.
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void rotateAroundY(float angle, Mat4 dest) {   // angle in degrees
+    float radians = (float)(angle*Math.PI/180.0);
+    long sc = Trig.sinCos(radians);
+    float s = Trig.sinOf(sc), c = Trig.cosOf(sc);
+    dest.setIdentity();
+    dest.set(0,0, c);
+    dest.set(0,2, s);
+    dest.set(2,0, -s);
+    dest.set(2,2, c);
+  }
+
   /**
    * Creates a 4x4 rotation matrix to rotate around the Z axis.
    * 
@@ -106,13 +168,59 @@ public final class Mat4Transform  {   // row column formulation
    */
    public static Mat4 rotateAroundZ(float angle) {   // angle in degrees
     Mat4 m = new Mat4(1);
-    angle = (float)(angle*Math.PI/180.0);
-    m.set(0,0, (float)Math.cos(angle));
-    m.set(0,1, -(float)Math.sin(angle));
-    m.set(1,0, (float)Math.sin(angle));
-    m.set(1,1, (float)Math.cos(angle));
+    rotateAroundZ(angle, m);
     return m;
   }
+
+  /**
+   * Writes a 4x4 rotation matrix around the Z axis into dest, without allocating.
+   * 
+   * @param angle The amount of rotation in degrees. Positive values indicate anticlockwise rotation.
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void rotateAroundZ(float angle, Mat4 dest) {   // angle in degrees
+    float radians = (float)(angle*Math.PI/180.0);
+    long sc = Trig.sinCos(radians);
+    float s = Trig.sinOf(sc), c = Trig.cosOf(sc);
+    dest.setIdentity();
+    dest.set(0,0, c);
+    dest.set(0,1, -s);
+    dest.set(1,0, s);
+    dest.set(1,1, c);
+  }
+  
+  /**
+   * Writes the affine matrix translation*rotation*scale into dest in a single pass, i.e. the
+   * object is scaled, then rotated, then translated. No intermediate matrices are built.
+   * 
+   * @param translation The translation amount (x,y,z)
+   * @param rotation A matrix whose upper 3x3 part holds the rotation. Its other values are ignored.
+   * @param scale The scale amount (x,y,z)
+   * @param dest The matrix to overwrite with the result. May be the same object as rotation.
+   */
+  public static void composeTRS(Vec3 translation, Mat4 rotation, Vec3 scale, Mat4 dest) {
+    float r00 = rotation.get(0,0), r01 = rotation.get(0,1), r02 = rotation.get(0,2);
+    float r10 = rotation.get(1,0), r11 = rotation.get(1,1), r12 = rotation.get(1,2);
+    float r20 = rotation.get(2,0), r21 = rotation.get(2,1), r22 = rotation.get(2,2);
+    dest.set(0,0, r00*scale.x); dest.set(0,1, r01*scale.y); dest.set(0,2, r02*scale.z); dest.set(0,3, translation.x);
+    dest.set(1,0, r10*scale.x); dest.set(1,1, r11*scale.y); dest.set(1,2, r12*scale.z); dest.set(1,3, translation.y);
+    dest.set(2,0, r20*scale.x); dest.set(2,1, r21*scale.y); dest.set(2,2, r22*scale.z); dest.set(2,3, translation.z);
+    dest.set(3,0, 0);           dest.set(3,1, 0);           dest.set(3,2, 0);           dest.set(3,3, 1);
+  }
+  
+  /**
+   * Writes the affine matrix translation*rotation*scale into dest in a single pass, taking the rotation
+   * from a unit quaternion. No intermediate matrices are built.
+   * 
+   * @param translation The translation amount (x,y,z)
+   * @param rotation The rotation, as a unit quaternion
+   * @param scale The scale amount (x,y,z)
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void composeTRS(Vec3 translation, Quat rotation, Vec3 scale, Mat4 dest) {
+    rotation.toMat4(dest);
+    composeTRS(translation, dest, scale, dest);
+  }
   
   /**
    * Creates a perspective matrix with near clip plane at 0.1f and far clip plane at 100f.
@@ -159,28 +267,35 @@ public final class Mat4Transform  {   // row column formulation
    * @return  The 4x4 viewing matrix, as a Mat4.
    */
    public static Mat4 lookAt(Vec3 from, Vec3 to, Vec3 worldup) {
-    Vec3 front = Vec3.subtract(to, from);
-    front.normalize();
-    Vec3 right = Vec3.crossProduct(front, worldup);
-    right.normalize();
-    Vec3 up = Vec3.crossProduct(right, front);
-    up.normalize();
-    Mat4 view = new Mat4(1);
-    view.set(0, 0, right.x);
-    view.set(0, 1, right.y);
-    view.set(0, 2, right.z);
-    view.set(1, 0, up.x);
-    view.set(1, 1, up.y);
-    view.set(1, 2, up.z);
-    view.set(2, 0, -front.x);
-    view.set(2, 1, -front.y);
-    view.set(2, 2, -front.z);
-    Mat4 cam = new Mat4(1);
-    cam.set(0, 3, -from.x);
-    cam.set(1, 3, -from.y);
-    cam.set(2, 3, -from.z);
-    Mat4 result = Mat4.multiply(view, cam);
+    Mat4 result = new Mat4(1);
+    lookAt(from, to, worldup, result);
     return result;
   }
+
+  /**
+   * Writes the view matrix for a camera at from, looking at to, into dest, without allocating.
+   * The result is the same as lookAt(from, to, worldup): the rotation and the inverse camera
+   * translation are combined directly rather than multiplied as two matrices.
+   * 
+   * @param from The camera postion.
+   * @param to The target that the camera is looking at.
+   * @param worldup The up direction for the world. 
+   * @param dest The matrix to overwrite with the result
+   */
+  public static void lookAt(Vec3 from, Vec3 to, Vec3 worldup, Mat4 dest) {
+    float fx = to.x-from.x, fy = to.y-from.y, fz = to.z-from.z;
+    float mag = (float)Math.sqrt(fx*fx+fy*fy+fz*fz);
+    fx /= mag; fy /= mag; fz /= mag;
+    float rx = fy*worldup.z-fz*worldup.y, ry = fz*worldup.x-fx*worldup.z, rz = fx*worldup.y-fy*worldup.x;
+    mag = (float)Math.sqrt(rx*rx+ry*ry+rz*rz);
+    rx /= mag; ry /= mag; rz /= mag;
+    float ux = ry*fz-rz*fy, uy = rz*fx-rx*fz, uz = rx*fy-ry*fx;
+    mag = (float)Math.sqrt(ux*ux+uy*uy+uz*uz);
+    ux /= mag; uy /= mag; uz /= mag;
+    dest.set(0, 0, rx);  dest.set(0, 1, ry);  dest.set(0, 2, rz);  dest.set(0, 3, -(rx*from.x+ry*from.y+rz*from.z));
+    dest.set(1, 0, ux);  dest.set(1, 1, uy);  dest.set(1, 2, uz);  dest.set(1, 3, -(ux*from.x+uy*from.y+uz*from.z));
+    dest.set(2, 0, -fx); dest.set(2, 1, -fy); dest.set(2, 2, -fz); dest.set(2, 3, fx*from.x+fy*from.y+fz*from.z);
+    dest.set(3, 0, 0);   dest.set(3, 1, 0);   dest.set(3, 2, 0);   dest.set(3, 3, 1);
+  }
   
 } // end of class
\ No newline at end of file
@@ -0,0 +1,188 @@
+package gmaths;
+
+/**
+ * A class for a rotation quaternion (x,y,z,w), where (x,y,z) is the vector part and w the scalar part.
+ * The rotation conventions match Mat4Transform: angles are in degrees and positive values indicate
+ * anticlockwise rotation, so q.toMat4() for setAroundX(a) equals Mat4Transform.rotateAroundX(a).
+ * Multiplication also matches Mat4: the matrix of a*b is the matrix of a times the matrix of b.
+ */
+public final class Quat {
+  public float x;
+  public float y;
+  public float z;
+  public float w;
+
+  /**
+   * Constructor. Creates the identity rotation.
+   */
+  public Quat() {
+    this(0,0,0,1);
+  }
+
+  public Quat(float x, float y, float z, float w) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.w = w;
+  }
+
+  public Quat(Quat q) {
+    this(q.x, q.y, q.z, q.w);
+  }
+
+  public void set(float x, float y, float z, float w) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.w = w;
+  }
+
+  public void set(Quat q) {
+    set(q.x, q.y, q.z, q.w);
+  }
+
+  public void setIdentity() {
+    set(0,0,0,1);
+  }
+
+  /**
+   * Sets this quaternion to a rotation around the X axis.
+   * @param angle The amount of rotation in degrees.
+   */
+  public void setAroundX(float angle) {
+    long sc = Trig.sinCos(Math.toRadians(angle)*0.5);
+    set(Trig.sinOf(sc), 0, 0, Trig.cosOf(sc));
+  }
+
+  /**
+   * Sets this quaternion to a rotation around the Y axis.
+   * @param angle The amount of rotation in degrees.
+   */
+  public void setAroundY(float angle) {
+    long sc = Trig.sinCos(Math.toRadians(angle)*0.5);
+    set(0, Trig.sinOf(sc), 0, Trig.cosOf(sc));
+  }
+
+  /**
+   * Sets this quaternion to a rotation around the Z axis.
+   * @param angle The amount of rotation in degrees.
+   */
+  public void setAroundZ(float angle) {
+    long sc = Trig.sinCos(Math.toRadians(angle)*0.5);
+    set(0, 0, Trig.sinOf(sc), Trig.cosOf(sc));
+  }
+
+  /**
+   * Sets this quaternion to a rotation around an arbitrary axis.
+   * @param axis The axis of rotation. It does not need to be normalized.
+   * @param angle The amount of rotation in degrees.
+   */
+  public void setAxisAngle(Vec3 axis, float angle) {
+    long sc = Trig.sinCos(Math.toRadians(angle)*0.5);
+    float s = Trig.sinOf(sc)/axis.magnitude();
+    set(axis.x*s, axis.y*s, axis.z*s, Trig.cosOf(sc));
+  }
+
+  public float magnitude() {
+    return (float)Math.sqrt(x*x+y*y+z*z+w*w);
+  }
+
+  public void normalize() {
+    float mag = magnitude();   // fails if mag = 0
+    x /= mag;
+    y /= mag;
+    z /= mag;
+    w /= mag;
+  }
+
+  public static float dotProduct(Quat a, Quat b) {
+    return a.x*b.x + a.y*b.y + a.z*b.z + a.w*b.w;
+  }
+
+  public static Quat multiply(Quat a, Quat b) {
+    Quat result = new Quat();
+    multiplyInto(a, b, result);
+    return result;
+  }
+
+  /**
+   * Calculates a*b and stores the result in dest, without allocating.
+   * dest may be the same object as a or b.
+   */
+  public static void multiplyInto(Quat a, Quat b, Quat dest) {
+    float rx = a.w*b.x + a.x*b.w + a.y*b.z - a.z*b.y;
+    float ry = a.w*b.y - a.x*b.z + a.y*b.w + a.z*b.x;
+    float rz = a.w*b.z + a.x*b.y - a.y*b.x + a.z*b.w;
+    float rw = a.w*b.w - a.x*b.x - a.y*b.y - a.z*b.z;
+    dest.set(rx, ry, rz, rw);
+  }
+
+  /**
+   * Post-multiplies this quaternion by q, i.e. this = this*q.
+   */
+  public void mulLocal(Quat q) {
+    multiplyInto(this, q, this);
+  }
+
+  /**
+   * Normalized linear interpolation between a and b along the shortest path, stored in dest.
+   * Cheaper than slerp but the angular speed is not constant; good for small angles.
+   */
+  public static void nlerp(Quat a, Quat b, float t, Quat dest) {
+    float sign = (dotProduct(a, b) < 0) ? -1 : 1;
+    float s = 1-t;
+    dest.set(s*a.x + sign*t*b.x, s*a.y + sign*t*b.y, s*a.z + sign*t*b.z, s*a.w + sign*t*b.w);
+    dest.normalize();
+  }
+
+  /**
+   * Spherical linear interpolation between a and b along the shortest path, stored in dest.
+   * The rotation changes at a constant angular speed as t goes from 0 to 1.
+   * dest may be the same object as a or b.
+   */
+  public static void slerp(Quat a, Quat b, float t, Quat dest) {
+    float bx = b.x, by = b.y, bz = b.z, bw = b.w;
+    float cos = dotProduct(a, b);
+    if (cos < 0) {   // take the shortest path
+      cos = -cos;
+      bx = -bx; by = -by; bz = -bz; bw = -bw;
+    }
+    float sa, sb;
+    if (cos > 0.9995f) {   // nearly parallel, so fall back to linear interpolation
+      sa = 1-t;
+      sb = t;
+    }
+    else {
+      double theta = Math.acos(cos);
+      double sin = Math.sin(theta);
+      sa = (float)(Math.sin((1-t)*theta)/sin);
+      sb = (float)(Math.sin(t*theta)/sin);
+    }
+    dest.set(sa*a.x + sb*bx, sa*a.y + sb*by, sa*a.z + sb*bz, sa*a.w + sb*bw);
+    if (cos > 0.9995f) dest.normalize();
+  }
+
+  /**
+   * Writes the rotation matrix for this (unit) quaternion into dest, without allocating.
+   */
+  public void toMat4(Mat4 dest) {
+    float xx = x*x, yy = y*y, zz = z*z;
+    float xy = x*y, xz = x*z, yz = y*z;
+    float wx = w*x, wy = w*y, wz = w*z;
+    dest.setIdentity();
+    dest.set(0,0, 1-2*(yy+zz)); dest.set(0,1, 2*(xy-wz));   dest.set(0,2, 2*(xz+wy));
+    dest.set(1,0, 2*(xy+wz));   dest.set(1,1, 1-2*(xx+zz)); dest.set(1,2, 2*(yz-wx));
+    dest.set(2,0, 2*(xz-wy));   dest.set(2,1, 2*(yz+wx));   dest.set(2,2, 1-2*(xx+yy));
+  }
+
+  public Mat4 toMat4() {
+    Mat4 m = new Mat4(1);
+    toMat4(m);
+    return m;
+  }
+
+  public String toString() {
+    return "("+x+","+y+","+z+","+w+")";
+  }
+
+} // end of Quat class
@@ -0,0 +1,115 @@
+package gmaths;
+
+/**
+ * Sine and cosine for the transform builders and animation code, including a fused sinCos that
+ * returns both for one angle.
+ *
+ * Two modes are available:
+ *   EXACT       Math.sin and Math.cos rounded to float. The default; results are the same as calling Math directly.
+ *   POLYNOMIAL  One shared range reduction to [-pi/4,pi/4] followed by minimax polynomials (from Cephes sinf/cosf)
+ *               evaluated in float. Max absolute error against Math is below 1e-7 (7.8e-8 measured by
+ *               benchmarks/TrigAccuracy for |angle| up to 1e4 radians). Cheaper than the two Math calls;
+ *               see the Trig benchmarks in benchmarks/GmathsBenchmark.
+ * The mode can be chosen with -Dgmaths.trig=exact|polynomial or with setMode().
+ */
+public final class Trig {
+
+  public enum Mode { EXACT, POLYNOMIAL }
+
+  public static final float MAX_POLYNOMIAL_ERROR = 1e-7f;
+
+  private static final double TWO_OVER_PI = 2/Math.PI;
+  private static final double PI_OVER_2 = Math.PI/2;
+
+  private static Mode mode = "polynomial".equals(System.getProperty("gmaths.trig")) ? Mode.POLYNOMIAL : Mode.EXACT;
+
+  private Trig() {
+  }
+
+  public static Mode getMode() {
+    return mode;
+  }
+
+  public static void setMode(Mode m) {
+    mode = m;
+  }
+
+  public static float sin(double angle) {   // angle in radians
+    if (mode == Mode.EXACT) return (float)Math.sin(angle);
+    double k = Math.rint(angle*TWO_OVER_PI);
+    float r = (float)(angle - k*PI_OVER_2);
+    switch ((int)((long)k & 3)) {
+      case 0: return sinPoly(r);
+      case 1: return cosPoly(r);
+      case 2: return -sinPoly(r);
+      default: return -cosPoly(r);
+    }
+  }
+
+  public static float cos(double angle) {   // angle in radians
+    if (mode == Mode.EXACT) return (float)Math.cos(angle);
+    double k = Math.rint(angle*TWO_OVER_PI);
+    float r = (float)(angle - k*PI_OVER_2);
+    switch ((int)((long)k & 3)) {
+      case 0: return cosPoly(r);
+      case 1: return -sinPoly(r);
+      case 2: return -cosPoly(r);
+      default: return sinPoly(r);
+    }
+  }
+
+  /**
+   * Calculates the sine and cosine of angle together.
+   * @param angle The angle in radians
+   * @param out Receives the sine in out[0] and the cosine in out[1]
+   */
+  public static void sinCos(double angle, float[] out) {
+    long sc = sinCos(angle);
+    out[0] = sinOf(sc);
+    out[1] = cosOf(sc);
+  }
+
+  /**
+   * Calculates the sine and cosine of angle together from one range reduction, and returns them packed
+   * in a long: the bits of the sine in the high half and of the cosine in the low half. Read them with
+   * sinOf and cosOf. Lets the transform builders share the work without sharing a scratch array.
+   * @param angle The angle in radians
+   */
+  static long sinCos(double angle) {
+    if (mode == Mode.EXACT) return pack((float)Math.sin(angle), (float)Math.cos(angle));
+    double k = Math.rint(angle*TWO_OVER_PI);
+    float r = (float)(angle - k*PI_OVER_2);
+    float s = sinPoly(r), c = cosPoly(r);
+    switch ((int)((long)k & 3)) {
+      case 0: return pack(s, c);
+      case 1: return pack(c, -s);
+      case 2: return pack(-s, -c);
+      default: return pack(-c, s);
+    }
+  }
+
+  static float sinOf(long sinCos) {
+    return Float.intBitsToFloat((int)(sinCos >>> 32));
+  }
+
+  static float cosOf(long sinCos) {
+    return Float.intBitsToFloat((int)sinCos);
+  }
+
+  private static long pack(float s, float c) {
+    return ((long)Float.floatToRawIntBits(s) << 32) | (Float.floatToRawIntBits(c) & 0xffffffffL);
+  }
+
+  // sin(r) for |r| <= pi/4
+  private static float sinPoly(float r) {
+    float z = r*r;
+    return ((-1.9515295891e-4f*z + 8.3321608736e-3f)*z - 1.6666654611e-1f)*z*r + r;
+  }
+
+  // cos(r) for |r| <= pi/4
+  private static float cosPoly(float r) {
+    float z = r*r;
+    return ((2.443315711809948e-5f*z - 1.388731625493765e-3f)*z + 4.166664568298827e-2f)*z*z - 0.5f*z + 1;
+  }
+
+} // end of Trig class
@@ -0,0 +1,217 @@
+package gmaths;
+
+/**
+ * A fixed-size array of 3D vectors stored as three primitive arrays (structure of arrays),
+ * for bulk position data such as robot way points, light positions or particles.
+ * The bulk operations work in place and do not allocate.
+ */
+public final class Vec3Array {
+  public final float[] x;
+  public final float[] y;
+  public final float[] z;
+  private final int size;
+
+  /**
+   * Constructor. All vectors are (0,0,0).
+   * @param size The number of vectors.
+   */
+  public Vec3Array(int size) {
+    this.size = size;
+    x = new float[size];
+    y = new float[size];
+    z = new float[size];
+  }
+
+  /**
+   * Constructor.
+   * @param v Vectors used to initialise the values of this array.
+   */
+  public Vec3Array(Vec3... v) {
+    this(v.length);
+    for (int i=0; i<size; ++i) {
+      set(i, v[i]);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void set(int i, float vx, float vy, float vz) {
+    x[i] = vx;
+    y[i] = vy;
+    z[i] = vz;
+  }
+
+  public void set(int i, Vec3 v) {
+    set(i, v.x, v.y, v.z);
+  }
+
+  /**
+   * Copies vector i into dest.
+   */
+  public void get(int i, Vec3 dest) {
+    dest.x = x[i];
+    dest.y = y[i];
+    dest.z = z[i];
+  }
+
+  public Vec3 get(int i) {
+    return new Vec3(x[i], y[i], z[i]);
+  }
+
+  /**
+   * Adds v to every vector.
+   */
+  public void add(Vec3 v) {
+    for (int i=0; i<size; ++i) {
+      x[i] += v.x;
+      y[i] += v.y;
+      z[i] += v.z;
+    }
+  }
+
+  /**
+   * Adds the vectors of a, element by element. a must be at least as long as this array.
+   */
+  public void add(Vec3Array a) {
+    for (int i=0; i<size; ++i) {
+      x[i] += a.x[i];
+      y[i] += a.y[i];
+      z[i] += a.z[i];
+    }
+  }
+
+  /**
+   * Adds the vectors of a multiplied by f, element by element (this += a*f),
+   * e.g. position += velocity*dt.
+   */
+  public void addScaled(Vec3Array a, float f) {
+    for (int i=0; i<size; ++i) {
+      x[i] += a.x[i]*f;
+      y[i] += a.y[i]*f;
+      z[i] += a.z[i]*f;
+    }
+  }
+
+  /**
+   * Multiplies every component by f.
+   */
+  public void multiply(float f) {
+    for (int i=0; i<size; ++i) {
+      x[i] *= f;
+      y[i] *= f;
+      z[i] *= f;
+    }
+  }
+
+  /**
+   * Normalizes every vector. Vectors of length 0 are left unchanged.
+   */
+  public void normalize() {
+    for (int i=0; i<size; ++i) {
+      float mag = (float)Math.sqrt(x[i]*x[i]+y[i]*y[i]+z[i]*z[i]);
+      if (mag > 0) {
+        x[i] /= mag;
+        y[i] /= mag;
+        z[i] /= mag;
+      }
+    }
+  }
+
+  /**
+   * Linear interpolation between vectors from and to of this array, stored in dest:
+   * (1-t)*from + t*to.
+   */
+  public void lerp(int from, int to, float t, Vec3 dest) {
+    float s = 1-t;
+    dest.x = s*x[from] + t*x[to];
+    dest.y = s*y[from] + t*y[to];
+    dest.z = s*z[from] + t*z[to];
+  }
+
+  /**
+   * Linear interpolation between a and b, element by element, stored in dest: (1-t)*a + t*b.
+   * dest may be a or b.
+   */
+  public static void lerp(Vec3Array a, Vec3Array b, float t, Vec3Array dest) {
+    float s = 1-t;
+    for (int i=0; i<dest.size; ++i) {
+      dest.x[i] = s*a.x[i] + t*b.x[i];
+      dest.y[i] = s*a.y[i] + t*b.y[i];
+      dest.z[i] = s*a.z[i] + t*b.z[i];
+    }
+  }
+
+  /**
+   * Transforms every vector as a point (w=1) by m.
+   */
+  public void transformPoints(Mat4 m) {
+    float m00 = m.get(0,0), m01 = m.get(0,1), m02 = m.get(0,2), m03 = m.get(0,3);
+    float m10 = m.get(1,0), m11 = m.get(1,1), m12 = m.get(1,2), m13 = m.get(1,3);
+    float m20 = m.get(2,0), m21 = m.get(2,1), m22 = m.get(2,2), m23 = m.get(2,3);
+    for (int i=0; i<size; ++i) {
+      float px = x[i], py = y[i], pz = z[i];
+      x[i] = m00*px + m01*py + m02*pz + m03;
+      y[i] = m10*px + m11*py + m12*pz + m13;
+      z[i] = m20*px + m21*py + m22*pz + m23;
+    }
+  }
+
+  public float distanceSquared(int i, Vec3 p) {
+    float dx = x[i]-p.x, dy = y[i]-p.y, dz = z[i]-p.z;
+    return dx*dx + dy*dy + dz*dz;
+  }
+
+  public float distance(int i, Vec3 p) {
+    return (float)Math.sqrt(distanceSquared(i, p));
+  }
+
+  /**
+   * Calculates the distance from p to every vector and stores them in out.
+   */
+  public void distances(Vec3 p, float[] out) {
+    for (int i=0; i<size; ++i) {
+      float dx = x[i]-p.x, dy = y[i]-p.y, dz = z[i]-p.z;
+      out[i] = (float)Math.sqrt(dx*dx + dy*dy + dz*dz);
+    }
+  }
+
+  /**
+   * Returns the index of the vector closest to p, or -1 if the array is empty.
+   */
+  public int nearest(Vec3 p) {
+    int best = -1;
+    float bestDistance = Float.POSITIVE_INFINITY;
+    for (int i=0; i<size; ++i) {
+      float d = distanceSquared(i, p);
+      if (d < bestDistance) {
+        bestDistance = d;
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Returns the number of vectors no further than radius from p.
+   */
+  public int countWithin(Vec3 p, float radius) {
+    float r2 = radius*radius;
+    int count = 0;
+    for (int i=0; i<size; ++i) {
+      if (distanceSquared(i, p) <= r2) count++;
+    }
+    return count;
+  }
+
+  public String toString() {
+    String s = "[";
+    for (int i=0; i<size; ++i) {
+      s += "("+x[i]+","+y[i]+","+z[i]+")";
+      if (i<size-1) s += ",";
+    }
+    return s+"]";
+  }
+
+} // end of Vec3Array class
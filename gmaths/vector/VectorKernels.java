@@ -0,0 +1,59 @@
+package gmaths.vector;
+
+import gmaths.Mat4Batch;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * jdk.incubator.vector implementation of Mat4Batch.Kernels. Loaded by Mat4Batch by name, so that
+ * the rest of gmaths builds without the incubator module. Compile and run with
+ * --add-modules jdk.incubator.vector.
+ *
+ * Matrix products work a row at a time in 4 lanes: each row of the result is the sum of the rows
+ * of b weighted by one element of a. They do not allocate.
+ *
+ * Points and normals use the same scalar loops as Mat4Batch's scalar kernels, and do not allocate
+ * either. Gathering the packed x,y,z triples into vectors with an index map allocated about 5 bytes
+ * per point, and separating them with contiguous loads and shuffles was no faster than the scalar
+ * loop at 128 bits, and allocated at the preferred width once the JIT had also seen the 128-bit
+ * products. Vec3Array, which keeps x, y and z in separate arrays, suits bulk points better.
+ */
+public final class VectorKernels implements Mat4Batch.Kernels {
+
+  private static final VectorSpecies<Float> ROW = FloatVector.SPECIES_128;
+
+  public void multiply(float[] a, float[] b, float[] out, int count) {
+    for (int i=0, o=0; i<count; ++i, o+=16) {
+      FloatVector b0 = FloatVector.fromArray(ROW, b, o);
+      FloatVector b1 = FloatVector.fromArray(ROW, b, o+4);
+      FloatVector b2 = FloatVector.fromArray(ROW, b, o+8);
+      FloatVector b3 = FloatVector.fromArray(ROW, b, o+12);
+      for (int r=0; r<16; r+=4) {
+        b0.mul(a[o+r])
+          .add(b1.mul(a[o+r+1]))
+          .add(b2.mul(a[o+r+2]))
+          .add(b3.mul(a[o+r+3]))
+          .intoArray(out, o+r);
+      }
+    }
+  }
+
+  public void transformPoints(float[] m, float[] xyz, int count) {
+    for (int i=0, n=count*3; i<n; i+=3) {
+      float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+      xyz[i]   = m[0]*x + m[1]*y + m[2]*z + m[3];
+      xyz[i+1] = m[4]*x + m[5]*y + m[6]*z + m[7];
+      xyz[i+2] = m[8]*x + m[9]*y + m[10]*z + m[11];
+    }
+  }
+
+  public void transformNormals(float[] m, float[] xyz, int count) {
+    for (int i=0, n=count*3; i<n; i+=3) {
+      float x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+      xyz[i]   = m[0]*x + m[1]*y + m[2]*z;
+      xyz[i+1] = m[4]*x + m[5]*y + m[6]*z;
+      xyz[i+2] = m[8]*x + m[9]*y + m[10]*z;
+    }
+  }
+
+}